@@ -0,0 +1,149 @@
+/** 
+ * Copyright (c) 2018, Woniu1983 All Rights Reserved. 
+ * 
+ */ 
+package cn.woniu.lib.pdf;
+
+import java.util.zip.Deflater;
+
+import cn.woniu.lib.pdf.encode.ZipPool;
+import cn.woniu.lib.pdf.model.PDFStream;
+
+/**
+ * @ClassName: AdaptiveCompressionPolicy <br/> 
+ * @Description: 按类型和长度选择压缩级别的策略:  <br/>
+ * 短于minLength的流不压缩(zlib头, 校验和/Filter反而使其变大);
+ * 不短于largeImageLength的图像用BEST_SPEED; 不长于smallObjectLength的内容流和ObjStm用BEST_COMPRESSION;
+ * 不短于sampleLength的流先用BEST_SPEED压缩几段样本, 压缩率达不到maxSampleRatio时原样写入.
+ * 其余情况使用原来的压缩级别.
+ *
+ * @author woniu1983 
+ * @date: 2026年10月18日 上午0:20:15 <br/>
+ * @version  
+ * @since JDK 1.6 
+ */
+public class AdaptiveCompressionPolicy implements CompressionPolicy {
+
+	/** 每段样本的长度 */
+	private static final int SAMPLE_SIZE = 4096;
+
+	/** 样本段数: 开头, 中间, 结尾 */
+	private static final int SAMPLES = 3;
+
+	private int minLength = 64;
+
+	private int largeImageLength = 1024 * 1024;
+
+	private int smallObjectLength = 64 * 1024;
+
+	private int sampleLength = 16 * 1024;
+
+	private double maxSampleRatio = 0.95;
+
+	/**
+	 * 短于此长度的流不压缩
+	 * @param minLength
+	 */
+	public void setMinLength(int minLength) {
+		this.minLength = minLength;
+	}
+
+	public int getMinLength() {
+		return minLength;
+	}
+
+	/**
+	 * 不短于此长度的图像用BEST_SPEED压缩
+	 * @param largeImageLength
+	 */
+	public void setLargeImageLength(int largeImageLength) {
+		this.largeImageLength = largeImageLength;
+	}
+
+	public int getLargeImageLength() {
+		return largeImageLength;
+	}
+
+	/**
+	 * 不长于此长度的内容流和ObjStm用BEST_COMPRESSION压缩
+	 * @param smallObjectLength
+	 */
+	public void setSmallObjectLength(int smallObjectLength) {
+		this.smallObjectLength = smallObjectLength;
+	}
+
+	public int getSmallObjectLength() {
+		return smallObjectLength;
+	}
+
+	/**
+	 * 不短于此长度的流先压缩样本检查是否可压缩, <= 0 时不检查
+	 * @param sampleLength
+	 */
+	public void setSampleLength(int sampleLength) {
+		this.sampleLength = sampleLength;
+	}
+
+	public int getSampleLength() {
+		return sampleLength;
+	}
+
+	/**
+	 * 样本压缩后与压缩前的长度比超过此值时不压缩
+	 * @param maxSampleRatio
+	 */
+	public void setMaxSampleRatio(double maxSampleRatio) {
+		this.maxSampleRatio = maxSampleRatio;
+	}
+
+	public double getMaxSampleRatio() {
+		return maxSampleRatio;
+	}
+
+	public int getCompressionLevel(StreamType type, int level, byte data[], int length) {
+		if (type == StreamType.XREF_STREAM) {
+			// xref流由阅读器首先读取, 保持原来的压缩
+			return level;
+		}
+		if (length < minLength) {
+			return RAW;
+		}
+		if (sampleLength > 0 && length >= sampleLength && !isCompressible(data, length)) {
+			return RAW;
+		}
+		if (type == StreamType.IMAGE && length >= largeImageLength) {
+			return PDFStream.BEST_SPEED;
+		}
+		if ((type == StreamType.CONTENT || type == StreamType.OBJECT_STREAM) && length <= smallObjectLength) {
+			return PDFStream.BEST_COMPRESSION;
+		}
+		return level;
+	}
+
+	/**
+	 * 用BEST_SPEED压缩开头, 中间, 结尾三段样本, 估计整个内容是否值得压缩
+	 */
+	protected boolean isCompressible(byte data[], int length) {
+		int sample = Math.min(SAMPLE_SIZE, length / SAMPLES);
+		byte buf[] = new byte[sample + 64];
+		long in = 0;
+		long out = 0;
+		Deflater deflater = ZipPool.getDeflater(PDFStream.BEST_SPEED, true);
+		try {
+			for (int i = 0; i < SAMPLES; ++i) {
+				int off = (int) ((long) (length - sample) * i / (SAMPLES - 1));
+				deflater.reset();
+				deflater.setInput(data, off, sample);
+				deflater.finish();
+				while (!deflater.finished()) {
+					out += deflater.deflate(buf);
+				}
+				in += sample;
+			}
+		} finally {
+			ZipPool.release(deflater);
+		}
+		return out <= in * maxSampleRatio;
+	}
+
+}
@@ -0,0 +1,46 @@
+/** 
+ * Copyright (c) 2018, Woniu1983 All Rights Reserved. 
+ * 
+ */ 
+package cn.woniu.lib.pdf;
+
+/**
+ * @ClassName: CompressionPolicy <br/> 
+ * @Description: 新流的压缩策略: 在流写入之前根据类型, 长度和内容决定压缩级别或不压缩.  <br/>
+ * 在压缩线程(见PDFWriter.setCompressionExecutor())中调用, 实现须是线程安全的.
+ *
+ * @author woniu1983 
+ * @date: 2026年10月18日 上午0:12:40 <br/>
+ * @version  
+ * @since JDK 1.6 
+ */
+public interface CompressionPolicy {
+
+	/** 不压缩, 原样写入(不加/FlateDecode) */
+	int RAW = -2;
+
+	/**
+	 * 流的类型
+	 * CONTENT: 页面内容流(包括水印的q/Q和绘制指令), 多个页面共用
+	 * IMAGE: 水印图像的像素数据
+	 * OBJECT_STREAM: 全压缩模式下的ObjStm
+	 * XREF_STREAM: 交叉引用流
+	 */
+	enum StreamType {
+		CONTENT, IMAGE, OBJECT_STREAM, XREF_STREAM
+	}
+
+	/**
+	 *
+	 * @Title: getCompressionLevel
+	 * @Description: 决定一个流的压缩级别
+	 *
+	 * @param type 流的类型
+	 * @param level 未使用策略时的压缩级别(PDFWriter或PDFImage的设置)
+	 * @param data 未压缩的内容, 只读
+	 * @param length 内容长度
+	 * @return 压缩级别(-1~9), 或{@link #RAW}
+	 */
+	int getCompressionLevel(StreamType type, int level, byte data[], int length);
+
+}
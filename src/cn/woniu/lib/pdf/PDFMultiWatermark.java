@@ -6,6 +6,8 @@ package cn.woniu.lib.pdf;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
 
@@ -18,7 +20,6 @@ import cn.woniu.lib.pdf.encode.IntHashtable;
 import cn.woniu.lib.pdf.encode.PDFEncryption;
 import cn.woniu.lib.pdf.image.PDFImage;
 import cn.woniu.lib.pdf.image.Rectangle;
-import cn.woniu.lib.pdf.io.BufferedRandomAccessFile;
 import cn.woniu.lib.pdf.model.PDFArray;
 import cn.woniu.lib.pdf.model.PDFDictionary;
 import cn.woniu.lib.pdf.model.PDFIndirectReference;
@@ -55,7 +56,8 @@ public class PDFMultiWatermark extends PDFWriter {
 	/**
 	 * PDF Page 上的一些内容，用于写文件时，添加到PDF中
 	 */
-	private HashMap<PDFDictionary, PageStamp> stampMap = new HashMap<PDFDictionary, PageStamp>(); 
+	/** 以页码为下标的PageStamp, 页面树中不会有重复的页面对象 */
+	private PageStamp stamps[];
 	
 	/** 
 	 *    多个水印图片及其配置
@@ -64,8 +66,30 @@ public class PDFMultiWatermark extends PDFWriter {
 	
 	public PDFMultiWatermark(final PDFReader reader, final File saveFile, WMarkImage... markimgs) throws IOException {
 		super(saveFile);
+		init(reader, markimgs);
+	}
+
+	/**
+	 * 输出到out(例如HTTP响应), 写完后out不会被关闭
+	 */
+	public PDFMultiWatermark(final PDFReader reader, final OutputStream out, WMarkImage... markimgs) throws IOException {
+		super(out);
+		init(reader, markimgs);
+	}
+
+	/**
+	 * 输出到out, 写完后out不会被关闭
+	 */
+	public PDFMultiWatermark(final PDFReader reader, final WritableByteChannel out, WMarkImage... markimgs) throws IOException {
+		super(out);
+		init(reader, markimgs);
+	}
+
+	private void init(final PDFReader reader, WMarkImage... markimgs) throws IOException {
 		this.reader = reader;
 		this.prevxref = this.reader.getLastXref();
+		// 增量的xref表的/Prev不能指向xref流, 此时也写xref流
+		this.fullCompression = this.reader.isLastXrefStream();
 		this.body = new PDFBody(this);
 		if (markimgs == null || markimgs.length <= 0) {
 			throw new IOException("Missing WMarkImage instances.");
@@ -79,12 +103,30 @@ public class PDFMultiWatermark extends PDFWriter {
 		}
 	}
 	
+	/**
+	 * 
+	 * @Title: computeLength  
+	 * @Description: 在内存中生成水印部分, 返回输出的准确长度(例如用于HTTP的Content-Length).
+	 * 之后调用appendWatermark()写出, 不会再生成一次.  
+	 *
+	 * @return 输出的字节数
+	 * @throws IOException
+	 */
+	public long computeLength() throws IOException {
+		prepareOutput();
+		appendWatermark();
+		return getPreparedLength();
+	}
+
 	public void appendWatermark() throws IOException {
+		if (writePrepared()) {
+			return;
+		}
 		String srcPath = this.reader.getSrcPDFPath();
 		long offset = this.reader.getHeaderOffset();
 
-		// 1. Read and save orginal PDF content, filter Header Offset
-		writeOrigPDF(srcPath, offset);
+		// 1. Read and save orginal PDF content, filter Header Offset (就地追加时不复制)
+		writeOriginal(srcPath, offset);
 		// 在文件最后添加换行
 		this.os.write(StringUtils.getISOBytes("\n"));
 		this.body.setOffset(this.os.getCounter()); //MUST
@@ -202,11 +244,13 @@ public class PDFMultiWatermark extends PDFWriter {
 	}
 
 	private PageStamp getPageStamp(int pageNum) {
-		PDFDictionary pageN = reader.getPageN(pageNum);
-		PageStamp ps = stampMap.get(pageN);
+		if (stamps == null) {
+			stamps = new PageStamp[reader.getPageCount() + 1];
+		}
+		PageStamp ps = stamps[pageNum];
 		if (ps == null) {
-			ps = new PageStamp(pageN);
-			stampMap.put(pageN, ps);
+			ps = new PageStamp(reader.getPageN(pageNum));
+			stamps[pageNum] = ps;
 		}
 		ps.pageN.setIndRef(reader.getPageOrigRef(pageNum));
 		return ps;
@@ -276,9 +320,9 @@ public class PDFMultiWatermark extends PDFWriter {
 		if (append) {
 			Logger.Debug("[PdfStamperImpl] addToBody--------------------------" + iInfo);
 			if (iInfo == null) {
-				info = addToBody(newInfo, false).getIndirectReference();
+				info = addToBody(newInfo, true).getIndirectReference();
 			} else {
-				info = addToBody(newInfo, iInfo.getNumber(), false).getIndirectReference();
+				info = addToBody(newInfo, iInfo.getNumber(), true).getIndirectReference();
 			}
 		} 
 
@@ -289,8 +333,18 @@ public class PDFMultiWatermark extends PDFWriter {
 	private void writeEnd(PDFIndirectReference info, int skipInfo) throws IOException {
 		alterContents();
 		int rootN = ((PRIndirectReference) reader.trailer.get(PDFName.ROOT)).getNumber();
+		if (append && isFullCompression()) {
+			// xref流和ObjStm需要PDF 1.5
+			PDFDictionary catalog = reader.trailer.getAsDict(PDFName.ROOT);
+			PDFName version = catalog == null ? null : catalog.getAsName(PDFName.VERSION);
+			String v = version == null ? reader.getPdfVersion() : version.toString().substring(1);
+			if (catalog != null && v != null && v.compareTo("1.5") < 0) {
+				catalog.put(PDFName.VERSION, new PDFName("1.5"));
+				markUsed(rootN);
+			}
+		}
 		if (append) {
-			int keys[] = marked.getKeys();
+			int keys[] = marked.toOrderedKeys();
 			for (int k = 0; k < keys.length; ++k) {
 				int j = keys[k];
 				PDFObj obj = reader.getPdfObjectRelease(j);
@@ -320,15 +374,20 @@ public class PDFMultiWatermark extends PDFWriter {
 		Logger.Debug("[PdfStamperImp] *******************************************Add xref*******************************************");
 
 		body.writeCrossReferenceTable(os, root, info, encryption, fileID, prevxref);
-		Logger.Debug("[PdfStamperImp] *******************************************Add trailer*******************************************");
-		PDFTrailer trailer = new PDFTrailer(body.size(),
-				body.offset(),
-				root,
-				info,
-				encryption,
-				fileID, prevxref);
-		trailer.write(os);
-		this.os.flush();
+		if (isFullCompression()) {
+			// xref流的字典即trailer
+			PDFTrailer.writeStartXref(os, body.offset());
+		} else {
+			Logger.Debug("[PdfStamperImp] *******************************************Add trailer*******************************************");
+			PDFTrailer trailer = new PDFTrailer(body.size(),
+					body.offset(),
+					root,
+					info,
+					encryption,
+					fileID, prevxref);
+			trailer.write(os);
+		}
+		commitOutput();
 		//		getCounter().written(os.getCounter()); //TODO
 	}
 
@@ -358,8 +417,11 @@ public class PDFMultiWatermark extends PDFWriter {
 	}
 
 	protected void alterContents() throws IOException {
-		for (Object element : stampMap.values()) {
-			PageStamp ps = (PageStamp) element;
+		for (int i = 0; stamps != null && i < stamps.length; ++i) {
+			PageStamp ps = stamps[i];
+			if (ps == null) {
+				continue;
+			}
 			PDFDictionary pageN = ps.pageN;
 			markUsed(pageN);
 			PDFArray ar = null;
@@ -382,9 +444,8 @@ public class PDFMultiWatermark extends PDFWriter {
 			if (ps.content != null) {
 				out.append(PDFContents.SAVESTATE);
 			}
-			PDFStream stream = new PDFStream(out.toByteArray());
-			stream.flateCompress(compressionLevel);
-			ar.addFirst(addToBody(stream).getIndirectReference());
+			// 内容相同的页面共用同一个内容流
+			ar.addFirst(addSharedContent(out.toByteArray()));
 			out.reset();
 			if (ps.content != null) {
 				out.append(' ');
@@ -395,9 +456,7 @@ public class PDFMultiWatermark extends PDFWriter {
 				applyRotation(pageN, out);
 				out.append(buf.getBuffer(), ps.replacePoint, buf.size() - ps.replacePoint);
 				out.append(PDFContents.RESTORESTATE);
-				stream = new PDFStream(out.toByteArray());
-				stream.flateCompress(compressionLevel);
-				ar.add(addToBody(stream).getIndirectReference());
+				ar.add(addSharedContent(out.toByteArray()));
 			}
 			alterResources(ps);
 		}
@@ -422,53 +481,22 @@ public class PDFMultiWatermark extends PDFWriter {
 			marked.put(num, 1);
 	}
 
-	void alterResources(PageStamp ps) {
-		ps.pageN.put(PDFName.RESOURCES, ps.getResources());
+	void alterResources(PageStamp ps) throws IOException {
+		// 共用/Resources的页面仍然共用一个新的/Resources对象
+		alterSharedResources(ps);
 	}
 
 
-	private void writeOrigPDF(String srcPath, long offset) throws IOException {
-		BufferedRandomAccessFile raf = null;
-		try {
-			raf = new BufferedRandomAccessFile(srcPath, "r");
-			raf.seek(offset);
-			
-			byte[] buff = new byte[4096];
-			int read = 0;
-			while((read = raf.read(buff)) != -1) {
-				this.os.write(buff, 0, read);
-			}
-			this.os.flush();
-			Logger.Debug("Save File len=" + this.os.getCounter());
-
-		} catch(IOException e) {
-			e.printStackTrace();
-			throw e;
-
-		} finally {
-			if (raf != null) {
-				try {
-					raf.close();
-				} catch (IOException e) {
-				}
-			}
-		}
-	}
-
 	public void close(){
-		if (this.os != null) {
-			try {
-				this.os.close();
-			} catch (IOException e) {
-			}
-		} 
-
+		// 先关闭reader(释放映射), APPEND_IN_PLACE回滚时才能截断同一个文件
 		if (this.reader != null) {
 			try {
 				this.reader.close();
 			} catch (IOException e) {
 			}
 		} 
+
+		closeOutput();
 	}
 
 
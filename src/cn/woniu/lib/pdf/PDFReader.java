@@ -4,25 +4,40 @@
  */ 
 package cn.woniu.lib.pdf;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
+import cn.woniu.lib.pdf.encode.ByteBuffer;
 import cn.woniu.lib.pdf.encode.IntHashtable;
 import cn.woniu.lib.pdf.encode.PdfEncodings;
+import cn.woniu.lib.pdf.encode.ZipPool;
 import cn.woniu.lib.pdf.image.Rectangle;
 import cn.woniu.lib.pdf.io.BufferedRandomAccessFile;
+import cn.woniu.lib.pdf.io.ByteArraySource;
+import cn.woniu.lib.pdf.io.FileChannelSource;
+import cn.woniu.lib.pdf.io.MappedByteBufferSource;
 import cn.woniu.lib.pdf.io.PDFToken;
 import cn.woniu.lib.pdf.io.PDFToken.TokenType;
+import cn.woniu.lib.pdf.io.RandomAccessFileSource;
+import cn.woniu.lib.pdf.io.RandomAccessSource;
+import cn.woniu.lib.pdf.io.XrefEntryDecoder;
 import cn.woniu.lib.pdf.model.PDFArray;
 import cn.woniu.lib.pdf.model.PDFBoolean;
 import cn.woniu.lib.pdf.model.PDFDictionary;
 import cn.woniu.lib.pdf.model.PDFName;
+import cn.woniu.lib.pdf.model.PDFNamePool;
 import cn.woniu.lib.pdf.model.PDFNull;
 import cn.woniu.lib.pdf.model.PDFNumeric;
+import cn.woniu.lib.pdf.model.PDFNumericArray;
 import cn.woniu.lib.pdf.model.PDFObj;
 import cn.woniu.lib.pdf.model.PDFString;
 import cn.woniu.lib.pdf.model.derivate.PDFLiteral;
@@ -63,6 +78,26 @@ public class PDFReader {
 	 */
 	private static boolean appendable = true;
 
+	/**
+	 * Default=false
+	 * true: 只保留xref偏移表, 对象在第一次被访问时才解析(适用于大文件, 只访问部分页面)
+	 */
+	private boolean partial = false;
+
+	/**
+	 * 读取文件的方式
+	 * BUFFERED: BufferedRandomAccessFile(64K缓冲)
+	 * MAPPED: 内存映射, 由页缓存提供数据, 无拷贝
+	 * CHANNEL: FileChannel定位读取
+	 */
+	public enum InputMode {
+		BUFFERED, MAPPED, CHANNEL
+	}
+
+	private static InputMode defaultInputMode = InputMode.MAPPED;
+
+	private InputMode inputMode;
+
 	private PDFToken token;
 
 	/** PDF 头部起始位置 (%PDF- 的偏移量) */
@@ -76,18 +111,26 @@ public class PDFReader {
 	protected long eofPos;
 	protected boolean newXrefType;
 	private boolean hybridXref;
+	/** 最后一个(startxref指向的)交叉引用是xref流 */
+	private boolean lastXrefStream;
 
 	/**
 	 * 存放了 xref下的Obj的 index and generation 
 	 */
 	public long xref[];
-	public HashMap<Integer, IntHashtable> objStmMark;
+	/** 有对象的xref条目指向的ObjStm: ObjStm的对象号 -> 指向它的条目数 */
+	public IntHashtable objStmMark;
 	public PDFDictionary trailer;
 	public PDFDictionary catalog;
-	public ArrayList<PDFObj> xrefObjs;
+	/** 按对象号存放已解析的对象 */
+	public PDFObj xrefObjs[];
 	public PDFDictionary rootPages;
 	protected PDFPageTree pageTree;
 
+	/** partial模式下, 解压后的ObjStm最多缓存的个数 */
+	private int objStmCacheSize = 16;
+	private LinkedHashMap<Integer, ObjectStream> objStmCache;
+
 	public static void main(String[] args) {
 		PDFReader reader = null;
 		try {
@@ -113,11 +156,52 @@ public class PDFReader {
 	 * @throws IOException
 	 */
 	public PDFReader(final String path) throws IOException{
+		this(path, false);
+	}
+
+	/**
+	 * 
+	 * <p>Title: </p>  
+	 * <p>Description: 读取PDF文件并解析结构， partial=true时只解析xref和页面树, 其他对象按需解析</p>  
+	 * @param path
+	 * @param partial
+	 * @throws IOException
+	 */
+	public PDFReader(final String path, final boolean partial) throws IOException{
+		this(path, partial, defaultInputMode);
+	}
+
+	/**
+	 * 
+	 * <p>Title: </p>  
+	 * <p>Description: 读取PDF文件并解析结构, 指定读取文件的方式</p>  
+	 * @param path
+	 * @param partial
+	 * @param inputMode 读取方式, 参见{@link InputMode}
+	 * @throws IOException
+	 */
+	public PDFReader(final String path, final boolean partial, final InputMode inputMode) throws IOException{
 		this.srcPdfPath = path;
+		this.partial = partial;
+		this.inputMode = inputMode == null ? defaultInputMode : inputMode;
 
 		readPdf();
 	}
 
+	/**
+	 * 设置默认的文件读取方式, 默认{@link InputMode#MAPPED}
+	 * @param mode
+	 */
+	public static void setDefaultInputMode(final InputMode mode) {
+		if (mode != null) {
+			defaultInputMode = mode;
+		}
+	}
+
+	public InputMode getInputMode() {
+		return this.inputMode;
+	}
+
 	public String getSrcPDFPath(){
 		return this.srcPdfPath;
 	}
@@ -131,7 +215,7 @@ public class PDFReader {
     }
 
     public int getXrefSize() {
-        return this.xrefObjs.size();
+        return this.xrefObjs.length;
     }
 
     public PDFDictionary getTrailer() {
@@ -170,33 +254,59 @@ public class PDFReader {
 			throw new FileNotFoundException(this.srcPdfPath + " can't open.");
 		}
 
-		// 1. Parse Pdf Version
-		parsePdfHeader();
-		checkPdfVersion();
-
-		// 2. RandomAccessFile
-		//		RandomAccessFile rasFile = new RandomAccessFile(file, "r");
-		BufferedRandomAccessFile rasFile = new BufferedRandomAccessFile(file, "r");
-		this.token = new PDFToken(rasFile, this.headerOffset);
+		// 1. RandomAccessSource
+		RandomAccessSource source = openSource(file);
+		try {
+			// 2. Parse Pdf Version
+			parsePdfHeader(source);
+			checkPdfVersion();
+		} catch (IOException e) {
+			source.close();
+			throw e;
+		}
+		this.token = new PDFToken(source, this.headerOffset);
 
 		// 3. Parse Xref  Trailer
 		parseXrefTrailer();
 
 		// 4. Parse PDF Objects
-		parsePDFObjs();
+		if (this.partial) {
+			initPDFObjs();
+		} else {
+			parsePDFObjs();
+		}
 
 		// 5. Parse PDF Pages
 		strings.clear();
 		parsePDFPages();
 	}
 
-	private void parsePdfHeader() throws IOException{
-		final BufferedRandomAccessFile buffRasFile = new BufferedRandomAccessFile(this.srcPdfPath, "r", 2048);
+	private RandomAccessSource openSource(final File file) throws IOException {
+		switch (this.inputMode) {
+		case MAPPED:
+			try {
+				return new MappedByteBufferSource(file);
+			} catch (IOException e) {
+				// 地址空间不足等原因映射失败时, 改用FileChannel读取
+				Logger.Info("mmap failed, fall back to FileChannel: " + e.getMessage());
+				this.inputMode = InputMode.CHANNEL;
+				return new FileChannelSource(file);
+			}
+		case CHANNEL:
+			return new FileChannelSource(file);
+		default:
+			return new RandomAccessFileSource(new BufferedRandomAccessFile(file, "r"));
+		}
+	}
 
+	private void parsePdfHeader(final RandomAccessSource source) throws IOException{
 		// Search %PDF-
 		byte[] buff = new byte[1024];
-		buffRasFile.seek(0);
-		int len = buffRasFile.read(buff);
+		source.seek(0);
+		int len = source.read(buff, 0, buff.length);
+		if (len <= 0){
+			throw new IOException("pdf header not found");
+		}
 		int index = StringUtils.search(buff, 0, len, PDFConstant.PDF_HEADER.getBytes());
 		if (index < 0){
 			throw new IOException("pdf header not found");
@@ -205,9 +315,9 @@ public class PDFReader {
 		Logger.Info("headerOffset=" + index);
 
 		// Search pdf version
-		buffRasFile.seek(index + PDFConstant.PDF_HEADER.length());
+		source.seek(index + PDFConstant.PDF_HEADER.length());
 		byte[] verBuff = new byte[3];
-		len = buffRasFile.read(verBuff);
+		len = source.read(verBuff, 0, verBuff.length);
 		String version = new String(verBuff);
 		try {
 			double value = Double.valueOf(version);	
@@ -230,7 +340,7 @@ public class PDFReader {
 		long index = this.token.getStartxref();
 		this.token.seek(index);
 		this.token.nextToken();
-		if (!this.token.getStringValue().equals("startxref"))
+		if (!this.token.tokenEquals(PDFToken.KEYWORD_STARTXREF))
 			throw new IOException("startxref.not.found");
 
 		// 2. value after "startxref", Must a number, means "xref" location
@@ -242,38 +352,49 @@ public class PDFReader {
 		this.lastXref = startxref;
 		eofPos = this.token.getFilePointer(); // Number之后一行是%%EOF        
 
-		// 3. xref parse 
-		try {
-			if (readXRefStream(startxref)) {
+		// 3. xref parse: 传统xref表或xref流(PDF1.5+), 通过/Prev串联
+		xref = null;
+		trailer = null;
+		HashSet<Long> visited = new HashSet<Long>();
+		long pos = startxref;
+		while (pos >= 0) {
+			if (!visited.add(Long.valueOf(pos))) {
+				throw new IOException("Trailer's Prev points to own reference");
+			}
+			PDFDictionary section = readXRefStream(pos);
+			boolean isStream = section != null;
+			if (isStream) {
 				newXrefType = true;
-				return;
+			} else {
+				this.token.seekOffset(pos);
+				section = readXrefSection();
+			}
+			if (trailer == null) {
+				trailer = section;
+				lastXrefStream = isStream;
 			}
-		} catch (Exception e) {}
+			PDFObj prev = section.get(PDFName.PREV);
+			pos = (prev != null && prev.isNumber()) ? ((PDFNumeric)prev).longValue() : -1;
+		}
+	}
 
-		xref = null;
-		this.token.seekOffset(startxref);
-		trailer = readXrefSection();
+	private void initPDFObjs() {
+		objStmCache = new LinkedHashMap<Integer, ObjectStream>(16, 0.75f, true) {
+			private static final long serialVersionUID = 4305364830162458126L;
 
-		PDFDictionary trailer2 = trailer;
-		while (true) {
-			PDFNumeric prev = (PDFNumeric)trailer2.get(PDFName.PREV);
-			if (prev == null) {
-				break;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, ObjectStream> eldest) {
+				return size() > objStmCacheSize;
 			}
-			if (prev.longValue() == startxref) {
-				throw new IOException("Trailer's Prev points to own reference");
-			}
-			long prevstartxref = prev.longValue();
-			this.token.seekOffset(prevstartxref);
-			trailer2 = readXrefSection();
-		}
+		};
+		// xref.length / 2 == obj total number, 对象在getPdfObject(int)时才解析
+		xrefObjs = new PDFObj[xref.length / 2];
 	}
 
 	private void parsePDFObjs() throws IOException {
 		ArrayList<PRStream> streams = new ArrayList<PRStream>();
 		// xref.length / 2 == obj total number
-		xrefObjs = new ArrayList<PDFObj>(xref.length / 2);
-		xrefObjs.addAll(Collections.<PDFObj>nCopies(xref.length / 2, null));
+		xrefObjs = new PDFObj[xref.length / 2];
 		for (int k = 2; k < xref.length; k += 2) {
 			long pos = xref[k];
 			if (pos <= 0 || xref[k + 1] > 0)
@@ -290,7 +411,7 @@ public class PDFReader {
 			}
 			objGen = this.token.intValue();
 			this.token.nextValidToken();
-			if (!this.token.getStringValue().equals("obj"))
+			if (!this.token.tokenEquals(PDFToken.KEYWORD_OBJ))
 				throw new IOException("Not Obj");
 			PDFObj obj;
 			try {
@@ -302,26 +423,344 @@ public class PDFReader {
 			catch (IOException e) {
 				throw e;
 			}
-			xrefObjs.set(k / 2, obj);
+			xrefObjs[k / 2] = obj;
 		}
 		for (int k = 0; k < streams.size(); ++k) {
 			checkPRStreamLength(streams.get(k));
 		}
 
-		// 以下不需要
 		//		readDecryptedDocObj();
-		//		if (objStmMark != null) {
-		//			for (Map.Entry<Integer, IntHashtable>entry: objStmMark.entrySet()) {
-		//				int n = entry.getKey().intValue();
-		//				IntHashtable h = entry.getValue();
-		//				readObjStm((PRStream)xrefObjs.get(n), h);
-		//				xrefObjs.set(n, null);
-		//			}
-		//			objStmMark = null;
-		//		}
+		if (objStmMark != null) {
+			int stms[] = objStmMark.toOrderedKeys();
+			for (int k = 0; k < stms.length; ++k) {
+				int n = stms[k];
+				readObjStm(n);
+				xrefObjs[n] = null;
+			}
+			objStmMark = null;
+		}
 		xref = null;
 	}
 
+	/**
+	 * 
+	 * @Title: readSingleObject  
+	 * @Description: partial模式下, 根据xref偏移解析单个对象  
+	 *
+	 * @param k 对象号
+	 * @return 解析后的对象, 不存在时返回null
+	 * @throws IOException
+	 */
+	protected PDFObj readSingleObject(final int k) throws IOException {
+		int k2 = k * 2;
+		if (xref == null || k2 + 1 >= xref.length)
+			return null;
+		if (xref[k2 + 1] > 0) {
+			// 对象在ObjStm中: xref[k2]=在流中的序号, xref[k2+1]=ObjStm的对象号
+			ObjectStream stm = getObjectStream((int)xref[k2 + 1]);
+			int index = (int)xref[k2];
+			if (index >= stm.numbers.length || stm.numbers[index] != k)
+				throw new IOException("Object " + k + " not found in object stream " + xref[k2 + 1]);
+			PDFObj obj = readObjStmObject(stm, index);
+			xrefObjs[k] = obj;
+			return obj;
+		}
+		long pos = xref[k2];
+		if (pos <= 0)
+			return null;
+		this.token.seekOffset(pos);
+		this.token.nextValidToken();
+		if (this.token.getTokenType() != TokenType.NUMBER) {
+			throw new IOException("Object Number invliad");
+		}
+		objNum = this.token.intValue();
+		this.token.nextValidToken();
+		if (this.token.getTokenType() != TokenType.NUMBER) {
+			throw new IOException("Object generation invalid");
+		}
+		objGen = this.token.intValue();
+		this.token.nextValidToken();
+		if (!this.token.tokenEquals(PDFToken.KEYWORD_OBJ))
+			throw new IOException("Not Obj");
+		PDFObj obj = readPRObject();
+		strings.clear();
+		// 先缓存, 修改(如页面的/Contents)都作用在同一个实例上
+		xrefObjs[k] = obj;
+		if (obj.isStream()) {
+			checkPRStreamLength((PRStream)obj);
+		}
+		return obj;
+	}
+
+	/**
+	 * 
+	 * @Title: getObjectStream  
+	 * @Description: partial模式下取得解压后的ObjStm, 同一个流只解压一次, 按LRU淘汰  
+	 *
+	 * @param num ObjStm的对象号
+	 * @return
+	 * @throws IOException
+	 */
+	protected ObjectStream getObjectStream(final int num) throws IOException {
+		Integer key = Integer.valueOf(num);
+		ObjectStream stm = objStmCache.get(key);
+		if (stm == null) {
+			stm = readObjectStream(num);
+			objStmCache.put(key, stm);
+		}
+		return stm;
+	}
+
+	/**
+	 * 
+	 * @Title: readObjectStream  
+	 * @Description: 解压ObjStm, 并读取其头部的(对象号 偏移)列表  
+	 *
+	 * @param num ObjStm的对象号
+	 * @return
+	 * @throws IOException
+	 */
+	protected ObjectStream readObjectStream(final int num) throws IOException {
+		PDFObj obj = getPdfObject(num);
+		if (obj == null || !obj.isStream())
+			throw new IOException("Object stream " + num + " not found");
+		PRStream stream = (PRStream)obj;
+		int first = stream.getAsNumber(PDFName.FIRST).intValue();
+		int n = stream.getAsNumber(PDFName.N).intValue();
+		ObjectStream stm = new ObjectStream(getStreamBytes(stream), n);
+		PDFToken saveToken = this.token;
+		this.token = new PDFToken(new ByteArraySource(stm.data), 0);
+		try {
+			for (int k = 0; k < n; ++k) {
+				if (!this.token.nextToken() || this.token.getTokenType() != TokenType.NUMBER)
+					throw new IOException("Error reading object stream " + num);
+				stm.numbers[k] = this.token.intValue();
+				if (!this.token.nextToken() || this.token.getTokenType() != TokenType.NUMBER)
+					throw new IOException("Error reading object stream " + num);
+				stm.offsets[k] = this.token.intValue() + first;
+			}
+		} finally {
+			this.token = saveToken;
+		}
+		return stm;
+	}
+
+	/**
+	 * 
+	 * @Title: readObjStmObject  
+	 * @Description: 从解压后的ObjStm中读取第index个对象  
+	 *
+	 * @param stm
+	 * @param index
+	 * @return
+	 * @throws IOException
+	 */
+	protected PDFObj readObjStmObject(final ObjectStream stm, final int index) throws IOException {
+		PDFToken saveToken = this.token;
+		this.token = new PDFToken(new ByteArraySource(stm.data), 0);
+		try {
+			objNum = stm.numbers[index];
+			objGen = 0;
+			this.token.seek(stm.offsets[index]);
+			this.token.nextToken();
+			PDFObj obj;
+			if (this.token.getTokenType() == TokenType.NUMBER) {
+				obj = new PDFNumeric(this.token.doubleValue(), this.token.getTokenBytes());
+			} else {
+				this.token.seek(stm.offsets[index]);
+				obj = readPRObject();
+			}
+			strings.clear();
+			return obj;
+		} finally {
+			this.token = saveToken;
+		}
+	}
+
+	private void readObjStm(final int num) throws IOException {
+		ObjectStream stm = readObjectStream(num);
+		for (int k = 0; k < stm.numbers.length; ++k) {
+			int p = stm.numbers[k] * 2;
+			// 只读取xref仍指向本ObjStm第k个对象的(可能已被后续的增量更新覆盖)
+			if (p + 1 >= xref.length || xref[p] != k || xref[p + 1] != num)
+				continue;
+			xrefObjs[stm.numbers[k]] = readObjStmObject(stm, k);
+		}
+	}
+
+	/**
+	 * 读取流的原始数据(未解码)
+	 * @param stream
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] getStreamBytesRaw(final PRStream stream) throws IOException {
+		if (stream.getOffset() < 0)
+			return stream.getBytes();
+		byte b[] = new byte[stream.getLength()];
+		this.token.seek(stream.getOffset());
+		this.token.readFully(b);
+		return b;
+	}
+
+	/**
+	 * 读取流的数据并按/Filter解码, 目前只支持FlateDecode
+	 * @param stream
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] getStreamBytes(final PRStream stream) throws IOException {
+		return decodeBytes(getStreamBytesRaw(stream), stream);
+	}
+
+	public static byte[] decodeBytes(byte b[], final PDFDictionary streamDictionary) throws IOException {
+		PDFObj filter = getPdfObjectRelease(streamDictionary.get(PDFName.FILTER));
+		ArrayList<PDFObj> filters = new ArrayList<PDFObj>();
+		if (filter != null) {
+			if (filter.isName())
+				filters.add(filter);
+			else if (filter.isArray())
+				for (PDFObj o : (PDFArray)filter)
+					filters.add(o);
+		}
+		ArrayList<PDFObj> dp = new ArrayList<PDFObj>();
+		PDFObj dpo = getPdfObjectRelease(streamDictionary.get(PDFName.DECODEPARMS));
+		if (dpo == null || (!dpo.isDictionary() && !dpo.isArray()))
+			dpo = getPdfObjectRelease(streamDictionary.get(PDFName.DP));
+		if (dpo != null) {
+			if (dpo.isDictionary())
+				dp.add(dpo);
+			else if (dpo.isArray())
+				for (PDFObj o : (PDFArray)dpo)
+					dp.add(o);
+		}
+		for (int j = 0; j < filters.size(); ++j) {
+			PDFObj name = getPdfObjectRelease(filters.get(j));
+			if (PDFName.FLATEDECODE.equals(name) || PDFName.FL.equals(name)) {
+				b = flateDecode(b);
+				PDFObj dicParam = j < dp.size() ? getPdfObjectRelease(dp.get(j)) : null;
+				b = decodePredictor(b, dicParam);
+			} else {
+				throw new IOException("unsupported filter: " + name);
+			}
+		}
+		return b;
+	}
+
+	/**
+	 * 解压FlateDecode数据
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public static byte[] flateDecode(final byte in[]) throws IOException {
+		Inflater inflater = ZipPool.getInflater();
+		try {
+			InflaterInputStream zip = new InflaterInputStream(new ByteArrayInputStream(in), inflater);
+			ByteArrayOutputStream out = new ByteArrayOutputStream(in.length * 4);
+			byte b[] = new byte[4096];
+			int n;
+			while ((n = zip.read(b)) >= 0) {
+				out.write(b, 0, n);
+			}
+			return out.toByteArray();
+		} finally {
+			ZipPool.release(inflater);
+		}
+	}
+
+	/**
+	 * 按/DecodeParms中的/Predictor还原数据, 支持TIFF(2)和PNG(10-15)
+	 * @param in
+	 * @param dicPar
+	 * @return
+	 */
+	public static byte[] decodePredictor(final byte in[], final PDFObj dicPar) throws IOException {
+		if (dicPar == null || !dicPar.isDictionary())
+			return in;
+		PDFDictionary dic = (PDFDictionary)dicPar;
+		PDFNumeric obj = dic.getAsNumber(PDFName.PREDICTOR);
+		if (obj == null)
+			return in;
+		int predictor = obj.intValue();
+		if (predictor < 10 && predictor != 2)
+			return in;
+		int width = 1;
+		obj = dic.getAsNumber(PDFName.COLUMNS);
+		if (obj != null)
+			width = obj.intValue();
+		int colors = 1;
+		obj = dic.getAsNumber(PDFName.COLORS);
+		if (obj != null)
+			colors = obj.intValue();
+		int bpc = 8;
+		obj = dic.getAsNumber(PDFName.BITSPERCOMPONENT);
+		if (obj != null)
+			bpc = obj.intValue();
+		int bytesPerPixel = Math.max(1, colors * bpc / 8);
+		int bytesPerRow = (colors * width * bpc + 7) / 8;
+		byte curr[] = new byte[bytesPerRow];
+		byte prior[] = new byte[bytesPerRow];
+
+		if (predictor == 2) {
+			if (bpc != 8)
+				return in;
+			byte out[] = in.clone();
+			for (int row = 0; row + bytesPerRow <= out.length; row += bytesPerRow) {
+				for (int i = bytesPerPixel; i < bytesPerRow; ++i)
+					out[row + i] += out[row + i - bytesPerPixel];
+			}
+			return out;
+		}
+
+		ByteArrayOutputStream fout = new ByteArrayOutputStream(in.length);
+		int p = 0;
+		while (p + 1 + bytesPerRow <= in.length) {
+			int filter = in[p++] & 0xff;
+			System.arraycopy(in, p, curr, 0, bytesPerRow);
+			p += bytesPerRow;
+			switch (filter) {
+			case 0: // PNG_FILTER_NONE
+				break;
+			case 1: // PNG_FILTER_SUB
+				for (int i = bytesPerPixel; i < bytesPerRow; i++)
+					curr[i] += curr[i - bytesPerPixel];
+				break;
+			case 2: // PNG_FILTER_UP
+				for (int i = 0; i < bytesPerRow; i++)
+					curr[i] += prior[i];
+				break;
+			case 3: // PNG_FILTER_AVERAGE
+				for (int i = 0; i < bytesPerPixel; i++)
+					curr[i] += (prior[i] & 0xff) / 2;
+				for (int i = bytesPerPixel; i < bytesPerRow; i++)
+					curr[i] += ((curr[i - bytesPerPixel] & 0xff) + (prior[i] & 0xff)) / 2;
+				break;
+			case 4: // PNG_FILTER_PAETH
+				for (int i = 0; i < bytesPerPixel; i++)
+					curr[i] += prior[i];
+				for (int i = bytesPerPixel; i < bytesPerRow; i++) {
+					int a = curr[i - bytesPerPixel] & 0xff;
+					int b = prior[i] & 0xff;
+					int c = prior[i - bytesPerPixel] & 0xff;
+					int pa = Math.abs(b - c);
+					int pb = Math.abs(a - c);
+					int pc = Math.abs(a + b - 2 * c);
+					int pr = (pa <= pb && pa <= pc) ? a : (pb <= pc) ? b : c;
+					curr[i] += (byte)pr;
+				}
+				break;
+			default:
+				throw new IOException("png.filter.unknown: " + filter);
+			}
+			fout.write(curr, 0, bytesPerRow);
+			byte tmp[] = prior;
+			prior = curr;
+			curr = tmp;
+		}
+		return fout.toByteArray();
+	}
+
 	protected void parsePDFPages() throws IOException {
 		this.catalog = this.trailer.getAsDict(PDFName.ROOT);
 		if (this.catalog == null) {
@@ -336,118 +775,111 @@ public class PDFReader {
 		pageTree = new PDFPageTree(this);
 	}
 
-	protected boolean readXRefStream(final long position) throws IOException {
-		return false;
-		//		this.token.seekOffset(position);
-		//		int thisStream = 0;
-		//		if (!this.token.nextToken())
-		//			return false;
-		//		if (this.token.getTokenType() != TokenType.NUMBER)
-		//			return false;
-		//		thisStream = this.token.intValue();
-		//		if (!this.token.nextToken() || this.token.getTokenType() != TokenType.NUMBER)
-		//			return false;
-		//		if (!this.token.nextToken() || !this.token.getStringValue().equals("obj"))
-		//			return false;
-		//
-		//		return false;//TODO
-		//		PDFObj object = readPRObject();
-		//		PRStream stm = null;
-		//		if (object.isStream()) {
-		//			stm = (PRStream)object;
-		//			if (!PDFName.XREF.equals(stm.get(PDFName.TYPE)))
-		//				return false;
-		//		}
-		//		else
-		//			return false;
-		//		if (trailer == null) {
-		//			trailer = new PDFDictionary();
-		//			trailer.putAll(stm);
-		//		}
-		//		stm.setLength(((PDFNumeric)stm.get(PDFName.LENGTH)).intValue());
-		//		int size = ((PDFNumeric)stm.get(PDFName.SIZE)).intValue();
-		//		PDFArray index;
-		//		PDFObj obj = stm.get(PDFName.INDEX);
-		//		if (obj == null) {
-		//			index = new PDFArray();
-		//			index.add(new int[]{0, size});
-		//		} else {
-		//			index = (PDFArray)obj;
-		//		}
-		//		PDFArray w = (PDFArray)stm.get(PDFName.W);
-		//		long prev = -1;
-		//		obj = stm.get(PDFName.PREV);
-		//		if (obj != null)
-		//			prev = ((PDFNumeric)obj).longValue();
-		//		// Each xref pair is a position
-		//		// type 0 -> -1, 0
-		//		// type 1 -> offset, 0
-		//		// type 2 -> index, obj num
-		//		ensureXrefSize(size * 2);
-		//		if (objStmMark == null) {
-		//			objStmMark = new HashMap<Integer, IntHashtable>();
-		//		}            
-		//		byte b[] = getStreamBytes(stm, this.token.getFile());
-		//		int bptr = 0;
-		//		int wc[] = new int[3];
-		//		for (int k = 0; k < 3; ++k)
-		//			wc[k] = w.getAsNumber(k).intValue();
-		//		for (int idx = 0; idx < index.size(); idx += 2) {
-		//			int start = index.getAsNumber(idx).intValue();
-		//			int length = index.getAsNumber(idx + 1).intValue();
-		//			ensureXrefSize((start + length) * 2);
-		//			while (length-- > 0) {
-		//				int type = 1;
-		//				if (wc[0] > 0) {
-		//					type = 0;
-		//					for (int k = 0; k < wc[0]; ++k)
-		//						type = (type << 8) + (b[bptr++] & 0xff);
-		//				}
-		//				long field2 = 0;
-		//				for (int k = 0; k < wc[1]; ++k)
-		//					field2 = (field2 << 8) + (b[bptr++] & 0xff);
-		//				int field3 = 0;
-		//				for (int k = 0; k < wc[2]; ++k)
-		//					field3 = (field3 << 8) + (b[bptr++] & 0xff);
-		//				int base = start * 2;
-		//				if (xref[base] == 0 && xref[base + 1] == 0) {
-		//					switch (type) {
-		//					case 0:
-		//						xref[base] = -1;
-		//						break;
-		//					case 1:
-		//						xref[base] = field2;
-		//						break;
-		//					case 2:
-		//						xref[base] = field3;
-		//						xref[base + 1] = field2;
-		//						Integer on = Integer.valueOf((int)field2);
-		//						IntHashtable seq = objStmMark.get(on);
-		//						if (seq == null) {
-		//							seq = new IntHashtable();
-		//							seq.put(field3, 1);
-		//							objStmMark.put(on, seq);
-		//						}
-		//						else
-		//							seq.put(field3, 1);
-		//						break;
-		//					}
-		//				}
-		//				++start;
-		//			}
-		//		}
-		//		thisStream *= 2;
-		//		if (thisStream + 1 < xref.length && xref[thisStream] == 0 && xref[thisStream + 1] == 0)
-		//			xref[thisStream] = -1;
-		//
-		//		if (prev == -1)
-		//			return true;
-		//		return readXRefStream(prev);
+	/**
+	 * 
+	 * @Title: readXRefStream  
+	 * @Description: 读取position处的xref流(/Type /XRef), 不处理/Prev  
+	 *
+	 * @param position xref流的位置(相对于PDF头部)
+	 * @return xref流的字典(作为trailer使用), position处不是xref流时返回null
+	 * @throws IOException
+	 */
+	protected PDFDictionary readXRefStream(final long position) throws IOException {
+		this.token.seekOffset(position);
+		if (!this.token.nextToken() || this.token.getTokenType() != TokenType.NUMBER)
+			return null;
+		int thisStream = this.token.intValue();
+		if (!this.token.nextToken() || this.token.getTokenType() != TokenType.NUMBER)
+			return null;
+		int thisGen = this.token.intValue();
+		if (!this.token.nextToken() || !this.token.tokenEquals(PDFToken.KEYWORD_OBJ))
+			return null;
+		objNum = thisStream;
+		objGen = thisGen;
+		PDFObj object = readPRObject();
+		if (!object.isStream() || !PDFName.XREF.equals(((PRStream)object).get(PDFName.TYPE)))
+			return null;
+		PRStream stm = (PRStream)object;
+		PDFObj len = stm.get(PDFName.LENGTH);
+		if (len == null || !len.isNumber())
+			throw new IOException("xref stream /Length is not a direct number");
+		checkPRStreamLength(stm);
+
+		int size = ((PDFNumeric)stm.get(PDFName.SIZE)).intValue();
+		PDFArray index;
+		PDFObj obj = stm.get(PDFName.INDEX);
+		if (obj == null) {
+			index = new PDFArray();
+			index.add(new int[]{0, size});
+		} else {
+			index = (PDFArray)obj;
+		}
+		PDFArray w = (PDFArray)stm.get(PDFName.W);
+		// Each xref pair is a position
+		// type 0 -> -1, 0
+		// type 1 -> offset, 0
+		// type 2 -> index, obj num
+		ensureXrefSize(size * 2);
+		if (objStmMark == null) {
+			objStmMark = new IntHashtable();
+		}
+		byte b[] = getStreamBytes(stm);
+		int bptr = 0;
+		int wc[] = new int[3];
+		for (int k = 0; k < 3; ++k)
+			wc[k] = w.getAsNumber(k).intValue();
+		int rowLength = wc[0] + wc[1] + wc[2];
+		for (int idx = 0; idx < index.size(); idx += 2) {
+			int start = index.getAsNumber(idx).intValue();
+			int length = index.getAsNumber(idx + 1).intValue();
+			ensureXrefSize((start + length) * 2);
+			while (length-- > 0) {
+				if (bptr + rowLength > b.length)
+					throw new IOException("xref stream is shorter than /Index declares");
+				int type = 1;
+				if (wc[0] > 0) {
+					type = 0;
+					for (int k = 0; k < wc[0]; ++k)
+						type = (type << 8) + (b[bptr++] & 0xff);
+				}
+				long field2 = 0;
+				for (int k = 0; k < wc[1]; ++k)
+					field2 = (field2 << 8) + (b[bptr++] & 0xff);
+				int field3 = 0;
+				for (int k = 0; k < wc[2]; ++k)
+					field3 = (field3 << 8) + (b[bptr++] & 0xff);
+				int base = start * 2;
+				if (xref[base] == 0 && xref[base + 1] == 0) {
+					switch (type) {
+					case 0:
+						xref[base] = -1;
+						break;
+					case 1:
+						xref[base] = field2;
+						break;
+					case 2:
+						xref[base] = field3;
+						xref[base + 1] = field2;
+						int on = (int)field2;
+						objStmMark.put(on, objStmMark.get(on) + 1);
+						break;
+					}
+				}
+				++start;
+			}
+		}
+		thisStream *= 2;
+		if (thisStream + 1 < xref.length && xref[thisStream] == 0 && xref[thisStream + 1] == 0)
+			xref[thisStream] = -1;
+
+		PDFDictionary dic = new PDFDictionary();
+		dic.putAll(stm);
+		return dic;
 	}
 
 	protected PDFDictionary readXrefSection() throws IOException {
 		this.token.nextValidToken();
-		if (!PDFConstant.PDF_XREF.equals(this.token.getStringValue())) {
+		if (!this.token.tokenEquals(PDFToken.KEYWORD_XREF)) {
 			throw new IOException("not found xref childs");
 		}
 
@@ -455,9 +887,11 @@ public class PDFReader {
 		int end = 0;
 		long pos = 0;
 		int gen = 0;
+		// 本节中标记为free的对象, 混合型文件(/XRefStm)中这些对象可能存在于xref流中
+		IntHashtable freed = null;
 		while (true) {
 			this.token.nextValidToken();
-			if (this.token.getStringValue().equals("trailer"))
+			if (this.token.tokenEquals(PDFToken.KEYWORD_TRAILER))
 				break;
 			if (this.token.getTokenType() != TokenType.NUMBER)
 				throw new IOException("not found the obj number in the 1st obj of xref childs");
@@ -479,21 +913,46 @@ public class PDFReader {
 				this.token.seek(back);
 			}
 			ensureXrefSize(end * 2);
-			for (int k = start; k < end; ++k) {
+			int k = start;
+			if (end > start) {
+				// 快速路径: 固定20字节的记录直接从字节块解码, 遇到格式不正确的记录时从该记录开始改用token解析
+				long first = skipWhitespace();
+				long entries[] = new long[end - start];
+				int valid = XrefEntryDecoder.decode(this.token.getSource(), first, end - start, entries);
+				for (int i = 0; i < valid; ++i, ++k) {
+					int p = k * 2;
+					if (xref[p] == 0 && xref[p + 1] == 0) {
+						if (entries[i] == XrefEntryDecoder.FREE) {
+							xref[p] = -1;
+							if (freed == null)
+								freed = new IntHashtable();
+							freed.put(k, 1);
+						} else {
+							xref[p] = entries[i];
+						}
+					}
+				}
+				this.token.seek(first + (long)valid * XrefEntryDecoder.RECORD_SIZE);
+			}
+			for (; k < end; ++k) {
 				this.token.nextValidToken();
 				pos = this.token.longValue();
 				this.token.nextValidToken();
 				gen = this.token.intValue();
 				this.token.nextValidToken();
 				int p = k * 2;
-				if (this.token.getStringValue().equals("n")) {
+				if (this.token.tokenEquals(PDFToken.KEYWORD_N)) {
 					if (xref[p] == 0 && xref[p + 1] == 0) {
 						xref[p] = pos;
 					}
 				}
-				else if (this.token.getStringValue().equals("f")) {
-					if (xref[p] == 0 && xref[p + 1] == 0)
+				else if (this.token.tokenEquals(PDFToken.KEYWORD_F)) {
+					if (xref[p] == 0 && xref[p + 1] == 0) {
 						xref[p] = -1;
+						if (freed == null)
+							freed = new IntHashtable();
+						freed.put(k, 1);
+					}
 				}
 				else
 					throw new IOException("invalid.cross.reference.entry.in.this.xref.subsection");
@@ -504,9 +963,14 @@ public class PDFReader {
 		ensureXrefSize(xrefSize.intValue() * 2);
 		PDFObj xrs = trailer.get(PDFName.XREFSTM);
 		if (xrs != null && xrs.isNumber()) {
-			int loc = ((PDFNumeric)xrs).intValue();
+			long loc = ((PDFNumeric)xrs).longValue();
+			int freedKeys[] = freed == null ? new int[0] : freed.getKeys();
+			// xref流中的条目优先于本节的free条目
+			for (int k = 0; k < freedKeys.length; ++k)
+				xref[freedKeys[k] * 2] = 0;
 			try {
-				readXRefStream(loc);
+				if (readXRefStream(loc) == null)
+					throw new IOException("/XRefStm does not point to a xref stream");
 				newXrefType = true;
 				hybridXref = true;
 			}
@@ -514,10 +978,29 @@ public class PDFReader {
 				xref = null;
 				throw e;
 			}
+			for (int k = 0; k < freedKeys.length; ++k) {
+				int p = freedKeys[k] * 2;
+				if (xref[p] == 0 && xref[p + 1] == 0)
+					xref[p] = -1;
+			}
 		}
 		return trailer;
 	}
 
+	/**
+	 * 跳过空白字符, 返回第一个非空白字符的位置(文件指针停在该位置)
+	 * @return
+	 * @throws IOException
+	 */
+	private long skipWhitespace() throws IOException {
+		int ch;
+		do {
+			ch = this.token.read();
+		} while (ch != -1 && PDFToken.isWhitespace(ch));
+		this.token.backOnePosition(ch);
+		return this.token.getFilePointer();
+	}
+
 	private void checkPRStreamLength(final PRStream stream) throws IOException {
 		long fileLength = this.token.length();
 		long start = stream.getOffset();
@@ -604,6 +1087,9 @@ public class PDFReader {
 					case PDFObj.NULL:
 						obj = new PDFNull();
 						break;
+					case PDFObj.NUMBER:
+						obj = new PDFNumeric(((PDFNumeric)obj).doubleValue(), obj.getBytes());
+						break;
 					case PDFObj.BOOLEAN:
 						obj = new PDFBoolean(((PDFBoolean)obj).booleanValue());
 						break;
@@ -672,6 +1158,9 @@ public class PDFReader {
 				case PDFObj.NULL:
 					obj = new PDFNull();
 					break;
+				case PDFObj.NUMBER:
+					obj = new PDFNumeric(((PDFNumeric)obj).doubleValue(), obj.getBytes());
+					break;
 				case PDFObj.BOOLEAN:
 					obj = new PDFBoolean(((PDFBoolean)obj).booleanValue());
 					break;
@@ -693,9 +1182,12 @@ public class PDFReader {
 	public PDFObj getPdfObject(final int idx) {
 		try {
 			lastXrefPartial = -1;
-			if (idx < 0 || idx >= xrefObjs.size())
+			if (idx < 0 || idx >= xrefObjs.length)
 				return null;
-			PDFObj obj = xrefObjs.get(idx);
+			PDFObj obj = xrefObjs[idx];
+			if (obj == null && partial) {
+				obj = readSingleObject(idx);
+			}
 			return obj;
 		} catch (Exception e) {
 			throw new RuntimeException(e);
@@ -770,10 +1262,20 @@ public class PDFReader {
      * @return a normalized <CODE>Rectangle</CODE>
      */
     public static Rectangle getNormalizedRectangle(final PDFArray box) {
-        float llx = ((PDFNumeric)getPdfObjectRelease(box.getPDFObj(0))).floatValue();
-        float lly = ((PDFNumeric)getPdfObjectRelease(box.getPDFObj(1))).floatValue();
-        float urx = ((PDFNumeric)getPdfObjectRelease(box.getPDFObj(2))).floatValue();
-        float ury = ((PDFNumeric)getPdfObjectRelease(box.getPDFObj(3))).floatValue();
+        float llx, lly, urx, ury;
+        if (box instanceof PDFNumericArray) {
+            // 直接读取数值, 不创建PDFNumeric
+            PDFNumericArray numbers = (PDFNumericArray) box;
+            llx = numbers.floatValue(0);
+            lly = numbers.floatValue(1);
+            urx = numbers.floatValue(2);
+            ury = numbers.floatValue(3);
+        } else {
+            llx = ((PDFNumeric)getPdfObjectRelease(box.getPDFObj(0))).floatValue();
+            lly = ((PDFNumeric)getPdfObjectRelease(box.getPDFObj(1))).floatValue();
+            urx = ((PDFNumeric)getPdfObjectRelease(box.getPDFObj(2))).floatValue();
+            ury = ((PDFNumeric)getPdfObjectRelease(box.getPDFObj(3))).floatValue();
+        }
         
         return new Rectangle(Math.min(llx, urx), Math.min(lly, ury),
         Math.max(llx, urx), Math.max(lly, ury));
@@ -791,8 +1293,24 @@ public class PDFReader {
 	private int objNum;
 	private int objGen;    
 
+	/** isPlainNumber()使用的缓冲 */
+	private final ByteBuffer numberText = new ByteBuffer(32);
+
+	/** readArray()暂存数值 */
+	private double numbers[] = new double[16];
+
+	/** 字典的键和直接对象中的名字, 同一文档中共享 */
+	private final PDFNamePool names = new PDFNamePool();
+
 	protected PDFObj readPRObject() throws IOException {
 		this.token.nextValidToken();
+		return readCurrentPRObject();
+	}
+
+	/**
+	 * 由当前token开始读取对象
+	 */
+	private PDFObj readCurrentPRObject() throws IOException {
 		TokenType type = this.token.getTokenType();
 		switch (type) {
 		case START_DIC: {
@@ -806,7 +1324,7 @@ public class PDFReader {
 				hasNext = this.token.nextToken();
 			} while (hasNext && this.token.getTokenType() == TokenType.COMMENT);
 
-			if (hasNext && this.token.getStringValue().equals("stream")) {
+			if (hasNext && this.token.tokenEquals(PDFToken.KEYWORD_STREAM)) {
 				//skip whitespaces
 				int ch;
 				do {
@@ -835,7 +1353,11 @@ public class PDFReader {
 			return arr;
 		}
 		case NUMBER:
-			return new PDFNumeric(this.token.getStringValue());
+			if (readDepth > 0 && isPlainNumber()) {
+				// 直接对象不保留原始文本, 写入时再生成
+				return PDFNumeric.create(this.token.doubleValue());
+			}
+			return new PDFNumeric(this.token.doubleValue(), this.token.getTokenBytes());
 		case STRING:
 			PDFString str = new PDFString(this.token.getStringValue(), null).setHexWriting(this.token.isHexString());
 			// crypto handling
@@ -845,9 +1367,8 @@ public class PDFReader {
 
 			return str;
 		case NAME: {
-			PDFName cachedName = PDFName.staticNames.get( this.token.getStringValue() );
-			if (readDepth > 0 && cachedName != null) {
-				return cachedName;
+			if (readDepth > 0) {
+				return names.get(this.token.getTokenBuffer(), this.token.getTokenLength());
 			} else {
 				// an indirect name (how odd...), or a non-standard one
 				return new PDFName(this.token.getStringValue(), false);
@@ -860,20 +1381,19 @@ public class PDFReader {
 		case ENDOFFILE:
 			throw new IOException("unexpected.end.of.file");
 		default:
-			String sv = this.token.getStringValue();
-			if ("null".equals(sv)) {
+			if (this.token.tokenEquals(PDFToken.KEYWORD_NULL)) {
 				if (readDepth == 0) {
 					return new PDFNull();
 				} //else
 				return PDFNull.PDFNULL;
 			}
-			else if ("true".equals(sv)) {
+			else if (this.token.tokenEquals(PDFToken.KEYWORD_TRUE)) {
 				if (readDepth == 0) {
 					return new PDFBoolean( true );
 				} //else
 				return PDFBoolean.PDFTRUE;
 			}
-			else if ("false".equals(sv)) {
+			else if (this.token.tokenEquals(PDFToken.KEYWORD_FALSE)) {
 				if (readDepth == 0) {
 					return new PDFBoolean( false );
 				} //else
@@ -891,7 +1411,7 @@ public class PDFReader {
 				break;
 			if (this.token.getTokenType() != TokenType.NAME)
 				throw new IOException("Dict key is not Name:" + this.token.getStringValue());
-			PDFName name = new PDFName(this.token.getStringValue(), false);
+			PDFName name = names.get(this.token.getTokenBuffer(), this.token.getTokenLength());
 			PDFObj obj = readPRObject();
 			int type = obj.type();
 			if (-type == TokenType.END_DIC.ordinal())
@@ -903,16 +1423,45 @@ public class PDFReader {
 		return dic;
 	}
 
+	/**
+	 * 当前NUMBER token的文本是否与PDFNumeric.writeNumber()写出的相同, 相同时可以不保留原始文本
+	 */
+	private boolean isPlainNumber() throws IOException {
+		numberText.reset();
+		PDFNumeric.writeNumber(numberText, this.token.doubleValue());
+		return this.token.tokenEquals(numberText.getBuffer(), numberText.size());
+	}
+
 	protected PDFArray readArray() throws IOException {
-		PDFArray array = new PDFArray();
+		// 只含数值时存为PDFNumericArray
+		int count = 0;
+		while (true) {
+			this.token.nextValidToken();
+			TokenType type = this.token.getTokenType();
+			if (type == TokenType.END_ARRAY) {
+				return count > 0 ? new PDFNumericArray(numbers, count) : new PDFArray();
+			}
+			if (type != TokenType.NUMBER || !isPlainNumber())
+				break;
+			if (count == numbers.length) {
+				double n[] = new double[count * 2];
+				System.arraycopy(numbers, 0, n, 0, count);
+				numbers = n;
+			}
+			numbers[count++] = this.token.doubleValue();
+		}
+		PDFArray array = new PDFArray(count + 4);
+		for (int k = 0; k < count; ++k)
+			array.add(PDFNumeric.create(numbers[k]));
+		PDFObj obj = readCurrentPRObject();
 		while (true) {
-			PDFObj obj = readPRObject();
 			int type = obj.type();
 			if (-type == TokenType.END_ARRAY.ordinal())
 				break;
 			if (-type == TokenType.END_DIC.ordinal())
 				throw new IOException("unexpected end of Dict");
 			array.add(obj);
+			obj = readPRObject();
 		}
 		return array;
 	}
@@ -942,6 +1491,55 @@ public class PDFReader {
 		return this.appendable;
 	}
 
+	public boolean isPartial() {
+		return this.partial;
+	}
+
+	public boolean isNewXrefType() {
+		return this.newXrefType;
+	}
+
+	public boolean isHybridXref() {
+		return this.hybridXref;
+	}
+
+	/**
+	 * startxref指向的是xref流(而不是xref表)
+	 */
+	public boolean isLastXrefStream() {
+		return this.lastXrefStream;
+	}
+
+	/**
+	 * PDF头部的版本号, 例如"1.4"
+	 */
+	public String getPdfVersion() {
+		return this.version;
+	}
+
+	/**
+	 * partial模式下, 解压后的ObjStm最多缓存的个数, 默认16
+	 * @param size
+	 */
+	public void setObjStmCacheSize(int size) {
+		this.objStmCacheSize = size < 1 ? 1 : size;
+	}
+
+	/**
+	 * 解压后的对象流(ObjStm): 数据和其中每个对象的对象号及偏移
+	 */
+	protected static class ObjectStream {
+		final byte data[];
+		final int numbers[];
+		final int offsets[];
+
+		ObjectStream(byte data[], int n) {
+			this.data = data;
+			this.numbers = new int[n];
+			this.offsets = new int[n];
+		}
+	}
+
 	public void close() throws IOException {
 		if (this.token != null) {
 			this.token.close();
@@ -4,14 +4,22 @@
  */ 
 package cn.woniu.lib.pdf;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileDescriptor;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.concurrent.Executor;
 
 import cn.woniu.lib.pdf.arc.PDFBody;
+import cn.woniu.lib.pdf.arc.PageStamp;
 import cn.woniu.lib.pdf.image.PDFImage;
 import cn.woniu.lib.pdf.io.CounterOutputStream;
 import cn.woniu.lib.pdf.model.PDFDictionary;
@@ -36,17 +44,79 @@ import cn.woniu.lib.pdf.util.StringUtils;
 public class PDFWriter {
 
 
+	/**
+	 * 输出文件的持久化方式
+	 * NONE: 不做fsync, 由操作系统决定何时落盘
+	 * SYNC_ON_CLOSE: 文档写完时fsync一次
+	 * ATOMIC_RENAME: 写入同目录下的临时文件, 写完后fsync一次再改名为目标文件, 目标文件不会出现写了一半的内容
+	 */
+	public enum Durability {
+		NONE, SYNC_ON_CLOSE, ATOMIC_RENAME
+	}
+
+	/**
+	 * 原PDF内容的写入方式
+	 * REWRITE: 将原PDF(去掉头部偏移)复制到输出文件, 再追加增量
+	 * APPEND_IN_PLACE: 不复制, 直接把增量追加到原PDF文件的末尾, saveFile不使用. 写入失败时原文件被截断回原长度
+	 * COPY_THEN_APPEND: 先将原PDF原样复制(包括头部偏移)到输出, 再追加增量, 原PDF不会被修改
+	 */
+	public enum WriteMode {
+		REWRITE, APPEND_IN_PLACE, COPY_THEN_APPEND
+	}
+
+	private static Durability defaultDurability = Durability.SYNC_ON_CLOSE;
+
+	/** 输出流, openOutput()之后才可用 */
 	protected CounterOutputStream os;
 
 	private File saveFile;
 
+	/** 调用者提供的输出(例如HTTP响应), 不由PDFWriter关闭 */
+	private OutputStream outStream;
+	private WritableByteChannel outChannel;
+
+	private Durability durability = defaultDurability;
+
+	/** ATOMIC_RENAME时实际写入的临时文件 */
+	private File tempFile;
+
+	private WriteMode writeMode = WriteMode.REWRITE;
+
+	/** 就地追加的文件及其追加前的长度, 未提交时用于回滚 */
+	private File appendFile;
+	private long appendBase = -1;
+
+	/** 预先计算长度时, 原PDF之后的内容先写入内存, 见prepareOutput() */
+	private boolean precompute = false;
+	private ByteArrayOutputStream prepared;
+	private long preparedLength = -1;
+	private String origPath;
+	private long origOffset;
+
 	/** body of the PDF document */
 	protected PDFBody body;
 
 	public PDFWriter(final File saveFile) throws IOException {
 		this.saveFile = saveFile;
-		FileOutputStream fos = new FileOutputStream(saveFile);
-		this.os =  new CounterOutputStream(fos);
+	}
+
+	/**
+	 * 输出到调用者提供的流, 写完后只flush不关闭
+	 * @param out
+	 * @throws IOException
+	 */
+	public PDFWriter(final OutputStream out) throws IOException {
+		this.outStream = out;
+	}
+
+	/**
+	 * 输出到调用者提供的channel, 写完后不关闭. channel须为阻塞模式
+	 * @param out
+	 * @throws IOException
+	 */
+	public PDFWriter(final WritableByteChannel out) throws IOException {
+		CounterOutputStream.checkBlocking(out);
+		this.outChannel = out;
 	}
 
 
@@ -54,8 +124,339 @@ public class PDFWriter {
 		return os;
 	}
 
+	/**
+	 * 设置默认的持久化方式, 默认{@link Durability#SYNC_ON_CLOSE}
+	 * @param durability
+	 */
+	public static void setDefaultDurability(final Durability durability) {
+		if (durability != null) {
+			defaultDurability = durability;
+		}
+	}
+
+	/**
+	 * 设置持久化方式, 必须在开始写文件之前设置
+	 * @param durability
+	 */
+	public void setDurability(final Durability durability) {
+		if (this.os != null) {
+			throw new IllegalStateException("output already opened");
+		}
+		if (durability != null) {
+			this.durability = durability;
+		}
+	}
+
+	public Durability getDurability() {
+		return this.durability;
+	}
+
+	/**
+	 * 设置原PDF内容的写入方式, 必须在开始写文件之前设置, 默认{@link WriteMode#REWRITE}
+	 * @param writeMode
+	 */
+	public void setWriteMode(final WriteMode writeMode) {
+		if (this.os != null) {
+			throw new IllegalStateException("output already opened");
+		}
+		if (writeMode != null) {
+			this.writeMode = writeMode;
+		}
+	}
+
+	public WriteMode getWriteMode() {
+		return this.writeMode;
+	}
+
+	/**
+	 * 
+	 * @Title: writeOriginal  
+	 * @Description: 按写入方式打开输出并写入(或保留)原PDF内容, 之后os.getCounter()即为相对于%PDF-头部的偏移量.  
+	 *
+	 * @param srcPath 原PDF文件
+	 * @param offset PDF头部的偏移量
+	 * @throws IOException
+	 */
+	protected void writeOriginal(final String srcPath, final long offset) throws IOException {
+		if (this.precompute) {
+			if (this.writeMode != WriteMode.REWRITE) {
+				throw new IllegalStateException("can't precompute length in " + this.writeMode + " mode");
+			}
+			// 原PDF在writePrepared()时才复制, 这里只计数
+			this.origPath = srcPath;
+			this.origOffset = offset;
+			this.prepared = new ByteArrayOutputStream();
+			this.os = new CounterOutputStream(this.prepared);
+			this.os.setCounter(new File(srcPath).length() - offset);
+			return;
+		}
+		if (this.writeMode == WriteMode.REWRITE) {
+			openOutput();
+			writeOrigPDF(srcPath, offset);
+			return;
+		}
+		if (this.writeMode == WriteMode.COPY_THEN_APPEND) {
+			openOutput();
+			writeOrigPDF(srcPath, 0);
+			// 偏移量都是相对于%PDF-头部的, 头部之前的内容保留在输出中
+			this.os.setCounter(this.os.getCounter() - offset);
+			return;
+		}
+		if (this.os != null) {
+			return;
+		}
+		File target = new File(srcPath);
+		RandomAccessFile raf = new RandomAccessFile(target, "rw");
+		FileChannel channel = raf.getChannel();
+		long size;
+		try {
+			size = channel.size();
+			channel.position(size);
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+		this.os = new CounterOutputStream(channel);
+		this.os.setCounter(size - offset);
+		this.appendFile = target;
+		this.appendBase = size;
+		Logger.Debug("Append to " + target + " at " + size);
+	}
+
+	/**
+	 * 
+	 * @Title: prepareOutput  
+	 * @Description: 先在内存中生成原PDF之后的全部内容, 得到输出的准确长度(例如HTTP的Content-Length),
+	 * 然后由writePrepared()一次写出. 只支持{@link WriteMode#REWRITE}, 必须在开始写之前调用.  
+	 *
+	 */
+	protected void prepareOutput() {
+		if (this.os != null) {
+			throw new IllegalStateException("output already opened");
+		}
+		this.precompute = true;
+	}
+
+	/**
+	 * prepareOutput()之后生成的输出长度, 未生成时返回-1
+	 */
+	public long getPreparedLength() {
+		return this.preparedLength;
+	}
+
+	/**
+	 * 
+	 * @Title: writePrepared  
+	 * @Description: 写出prepareOutput()生成的内容: 原PDF + 内存中的增量.  
+	 *
+	 * @return 没有已生成的内容时返回false
+	 * @throws IOException
+	 */
+	protected boolean writePrepared() throws IOException {
+		if (this.prepared == null) {
+			return false;
+		}
+		ByteArrayOutputStream increment = this.prepared;
+		this.prepared = null;
+		this.precompute = false;
+		this.os = null;
+		openOutput();
+		writeOrigPDF(this.origPath, this.origOffset);
+		increment.writeTo(this.os);
+		if (this.os.getCounter() != this.preparedLength) {
+			// 原PDF在两次调用之间被修改
+			throw new IOException("output length changed: " + this.os.getCounter() + " != " + this.preparedLength);
+		}
+		commitOutput();
+		return true;
+	}
+
+	/**
+	 * 打开输出文件, ATOMIC_RENAME时打开同目录下的临时文件
+	 * @throws IOException
+	 */
+	protected void openOutput() throws IOException {
+		if (this.os != null) {
+			return;
+		}
+		if (this.outStream != null) {
+			this.os = new CounterOutputStream(this.outStream);
+		} else if (this.outChannel != null) {
+			this.os = new CounterOutputStream(this.outChannel);
+		} else {
+			this.os = new CounterOutputStream(new FileOutputStream(openTarget()));
+		}
+	}
+
+	/**
+	 * 输出文件, ATOMIC_RENAME时为同目录下新建的临时文件
+	 */
+	private File openTarget() throws IOException {
+		if (this.durability == Durability.ATOMIC_RENAME) {
+			File dir = this.saveFile.getAbsoluteFile().getParentFile();
+			this.tempFile = File.createTempFile(this.saveFile.getName() + ".", ".tmp", dir);
+			return this.tempFile;
+		}
+		return this.saveFile;
+	}
+
+	/**
+	 * 文档写完后调用: 按持久化方式flush, fsync, 改名. 只有这里会fsync
+	 * 就地追加时不能改名, ATOMIC_RENAME等同于SYNC_ON_CLOSE
+	 * @throws IOException
+	 */
+	protected void commitOutput() throws IOException {
+		this.os.flush();
+		if (this.precompute) {
+			this.preparedLength = this.os.getCounter();
+			return;
+		}
+		if (this.durability == Durability.NONE) {
+			this.appendBase = -1;
+			return;
+		}
+		this.os.sync();
+		this.appendBase = -1;
+		if (this.durability == Durability.ATOMIC_RENAME && this.tempFile != null) {
+			this.os.close();
+			if (!this.tempFile.renameTo(this.saveFile)) {
+				// Windows下目标文件存在时renameTo失败, 只能先删除(此时不再是原子的)
+				if (!this.saveFile.delete() || !this.tempFile.renameTo(this.saveFile)) {
+					throw new IOException("can't rename " + this.tempFile + " to " + this.saveFile);
+				}
+			}
+			this.tempFile = null;
+		}
+	}
+
+	/**
+	 * 关闭输出文件, ATOMIC_RENAME时未提交的临时文件会被删除, 未提交的就地追加会被截断
+	 */
+	protected void closeOutput() {
+		if (this.os != null) {
+			try {
+				if (this.outStream != null || this.outChannel != null) {
+					this.os.flush();
+				} else {
+					this.os.close();
+				}
+			} catch (IOException e) {
+			}
+		}
+		if (this.appendBase >= 0) {
+			try {
+				RandomAccessFile raf = new RandomAccessFile(this.appendFile, "rw");
+				try {
+					raf.setLength(this.appendBase);
+				} finally {
+					raf.close();
+				}
+			} catch (IOException e) {
+				Logger.Error("can't truncate " + this.appendFile + " to " + this.appendBase);
+			}
+			this.appendBase = -1;
+		}
+		if (this.tempFile != null) {
+			if (!this.tempFile.delete()) {
+				this.tempFile.deleteOnExit();
+			}
+			this.tempFile = null;
+		}
+	}
+
 
     protected int compressionLevel = PDFStream.DEFAULT_COMPRESSION;
+
+	/** 小对象写入ObjStm, 交叉引用写为xref流(PDF 1.5) */
+	protected boolean fullCompression = false;
+
+	public int getCompressionLevel() {
+		return compressionLevel;
+	}
+
+	public boolean isFullCompression() {
+		return fullCompression;
+	}
+
+	/** 新流的压缩策略, 为null时都按compressionLevel压缩 */
+	protected CompressionPolicy compressionPolicy;
+
+	public CompressionPolicy getCompressionPolicy() {
+		return compressionPolicy;
+	}
+
+	/**
+	 * 设置新流(水印图像, 内容流, ObjStm, xref流)的压缩策略, 如AdaptiveCompressionPolicy
+	 * @param policy 为null时内容流等按PDFWriter的压缩级别, 图像按PDFImage的压缩级别压缩
+	 */
+	public void setCompressionPolicy(final CompressionPolicy policy) {
+		this.compressionPolicy = policy;
+	}
+
+	/** 压缩新流的线程池, 为null时在当前线程压缩 */
+	protected Executor compressionExecutor;
+
+	public Executor getCompressionExecutor() {
+		return compressionExecutor;
+	}
+
+	/**
+	 * 设置压缩新流(水印图像, 内容流, ObjStm, xref流)的线程池. 流在其他线程并发压缩,
+	 * 仍由当前线程按添加的顺序写入, 输出与不使用线程池时相同. 线程池由调用者关闭
+	 * @param executor 为null时在当前线程压缩
+	 */
+	public void setCompressionExecutor(final Executor executor) {
+		this.compressionExecutor = executor;
+	}
+
+	/** 内容相同的新对象只写一次, 见PDFBody.add(PDFObj) */
+	protected boolean deduplicate = false;
+
+	public boolean isDeduplicate() {
+		return deduplicate;
+	}
+
+	/**
+	 * 设置对象去重: 新添加的对象按序列化后的内容(SHA-256)去重, 相同时返回已写入对象的引用.
+	 * 会多一次序列化和hash计算, 默认关闭
+	 * @param deduplicate
+	 */
+	public void setDeduplicate(final boolean deduplicate) {
+		this.deduplicate = deduplicate;
+	}
+
+	/**
+	 * 去重统计: 计算过hash的对象数
+	 */
+	public int getDedupHashed() {
+		return body == null ? 0 : body.getDedupHashed();
+	}
+
+	/**
+	 * 去重统计: 重复而未写入的对象数
+	 */
+	public int getDedupHits() {
+		return body == null ? 0 : body.getDedupHits();
+	}
+
+	/**
+	 * 去重统计: 未写入的字节数
+	 */
+	public long getDedupBytesSaved() {
+		return body == null ? 0 : body.getDedupBytesSaved();
+	}
+
+	/**
+	 * 设置full compression: 页面字典等小对象压缩到/ObjStm中, 交叉引用写为/Type /XRef流.
+	 * 原PDF的最后一个交叉引用是xref流时默认开启, 必须在开始写之前设置
+	 * @param fullCompression
+	 */
+	public void setFullCompression(final boolean fullCompression) {
+		if (this.os != null) {
+			throw new IllegalStateException("output already opened");
+		}
+		this.fullCompression = fullCompression;
+	}
     
 	/** This is the list with all the images in the document. */
 	private final HashMap<Long, PDFName> images = new HashMap<Long, PDFName>();
@@ -64,6 +465,78 @@ public class PDFWriter {
 	/** Dictionary, containing all the images of the PDF document */
 	protected PDFDictionary imageDictionary = new PDFDictionary();
 
+	/** 内容相同的页面内容流(q, 相同位置/旋转的水印)只写一次, 各页面共用 */
+	private final HashMap<ByteBuffer, PDFIndirectReference> sharedContents = new HashMap<ByteBuffer, PDFIndirectReference>();
+
+	/** 原/Resources对象 -> (水印的XObject字典 -> 合并后的新/Resources) */
+	private final IdentityHashMap<PDFDictionary, HashMap<ByteBuffer, SharedResources>> sharedResources =
+			new IdentityHashMap<PDFDictionary, HashMap<ByteBuffer, SharedResources>>();
+
+	/**
+	 * 合并后的/Resources: 只有一个页面使用时直接写在页面中, 第二个页面使用时改为间接对象
+	 */
+	private static class SharedResources {
+		PDFDictionary firstPage;
+		PDFDictionary resources;
+		PDFIndirectReference ref;
+	}
+
+	/**
+	 * 
+	 * @Title: alterSharedResources  
+	 * @Description: 设置页面合并水印后的/Resources. 原/Resources相同(同一个对象)且水印XObject相同的页面共用一个间接对象,
+	 * 增量的大小与不同的资源组合数成正比, 而不是与页数成正比. 页面字典在所有页面处理完之后才写入.  
+	 *
+	 * @param ps
+	 * @throws IOException
+	 */
+	protected void alterSharedResources(final PageStamp ps) throws IOException {
+		HashMap<ByteBuffer, SharedResources> group = sharedResources.get(ps.originalResources);
+		if (group == null) {
+			group = new HashMap<ByteBuffer, SharedResources>();
+			sharedResources.put(ps.originalResources, group);
+		}
+		ByteArrayOutputStream xobjects = new ByteArrayOutputStream();
+		ps.xObjectDictionary.write(xobjects);
+		ByteBuffer key = ByteBuffer.wrap(xobjects.toByteArray());
+		SharedResources shared = group.get(key);
+		if (shared == null) {
+			shared = new SharedResources();
+			shared.firstPage = ps.pageN;
+			shared.resources = ps.getResources();
+			group.put(key, shared);
+			ps.pageN.put(PDFName.RESOURCES, shared.resources);
+			return;
+		}
+		if (shared.ref == null) {
+			shared.ref = addToBody(shared.resources).getIndirectReference();
+			shared.firstPage.put(PDFName.RESOURCES, shared.ref);
+		}
+		ps.pageN.put(PDFName.RESOURCES, shared.ref);
+	}
+
+	/**
+	 * 
+	 * @Title: addSharedContent  
+	 * @Description: 添加压缩的内容流, 内容与已添加的相同时直接返回已有的引用, 不再压缩和写入.  
+	 *
+	 * @param content 未压缩的内容
+	 * @return 内容流的引用
+	 * @throws IOException
+	 */
+	protected PDFIndirectReference addSharedContent(final byte[] content) throws IOException {
+		ByteBuffer key = ByteBuffer.wrap(content);
+		PDFIndirectReference ref = sharedContents.get(key);
+		if (ref == null) {
+			PDFStream stream = new PDFStream(content);
+			stream.deferFlateCompress(compressionLevel);
+			stream.setCompressionPolicy(compressionPolicy, CompressionPolicy.StreamType.CONTENT);
+			ref = addToBody(stream).getIndirectReference();
+			sharedContents.put(key, ref);
+		}
+		return ref;
+	}
+
 	public PDFIndirectReference getImageReference(final PDFName name) {
 		return (PDFIndirectReference) imageDictionary.get(name);
 	}
@@ -97,6 +570,7 @@ public class PDFWriter {
 			}
 
 			ImageStream stream = new ImageStream(image, "img" + images.size(), maskRef);
+			stream.setCompressionPolicy(compressionPolicy, CompressionPolicy.StreamType.IMAGE);
 			Logger.Debug("[PdfWriter] PdfImage===>" + stream.getName());//TODO
 
 			add(stream);
@@ -182,12 +656,37 @@ public class PDFWriter {
         return iobj;
     }
 
-	protected void cacheObject(PDFIndirectObject iobj) throws IOException {
-		if (this.os != null) {
-			this.os.flush();
+	/**
+	 * 
+	 * @Title: writeOrigPDF  
+	 * @Description: 将原PDF从offset(%PDF-头部)开始复制到输出文件.  
+	 * 使用FileChannel.transferTo, 由内核复制数据(Linux下为sendfile/copy_file_range), 不经过JVM堆.
+	 *
+	 * @param srcPath 原PDF文件
+	 * @param offset PDF头部的偏移量
+	 * @throws IOException
+	 */
+	protected void writeOrigPDF(final String srcPath, final long offset) throws IOException {
+		FileInputStream fis = new FileInputStream(srcPath);
+		try {
+			FileChannel src = fis.getChannel();
+			long count = src.size() - offset;
+			if (count > 0) {
+				this.os.transferFrom(src, offset, count);
+			}
+			Logger.Debug("Save File len=" + this.os.getCounter());
+		} finally {
+			try {
+				fis.close();
+			} catch (IOException e) {
+			}
 		}
 	}
 
+	protected void cacheObject(PDFIndirectObject iobj) throws IOException {
+		// 不再每个对象flush/fsync, 见commitOutput()
+	}
+
 
 
 	//    protected PDFReaderInstance currentPdfReaderInstance;
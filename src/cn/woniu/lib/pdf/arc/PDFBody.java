@@ -6,15 +6,26 @@ package cn.woniu.lib.pdf.arc;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.TreeSet;
-
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import cn.woniu.lib.pdf.CompressionPolicy;
 import cn.woniu.lib.pdf.PDFWriter;
 import cn.woniu.lib.pdf.encode.ByteBuffer;
+import cn.woniu.lib.pdf.encode.SparseLongArray;
 import cn.woniu.lib.pdf.model.PDFIndirectObject;
+import cn.woniu.lib.pdf.model.PDFArray;
 import cn.woniu.lib.pdf.model.PDFIndirectReference;
+import cn.woniu.lib.pdf.model.PDFName;
+import cn.woniu.lib.pdf.model.PDFNumeric;
 import cn.woniu.lib.pdf.model.PDFObj;
+import cn.woniu.lib.pdf.model.PDFStream;
 import cn.woniu.lib.pdf.util.Logger;
 import cn.woniu.lib.pdf.util.PDFConstant;
 import cn.woniu.lib.pdf.util.StringUtils;
@@ -33,10 +44,13 @@ public class PDFBody {
 
 	private static final int OBJSINSTREAM = 200;
 
+	/** 等待压缩的流最多的个数, 超过时等待最早的一个 */
+	private static final int MAX_PENDING = 64;
+
 	protected final PDFWriter writer;
 
-	/** array containing the cross-reference table of the normal objects. */
-	protected final TreeSet<PDFCrossReference> xrefs;
+	/** the cross-reference table: 以对象号为下标, PDFCrossReference.pack()压缩的条目 */
+	protected final SparseLongArray xrefs;
 
 	protected int refnum;
 
@@ -51,10 +65,36 @@ public class PDFBody {
 
 	protected ByteBuffer streamObjects;
 
+	/** 去重: 序列化内容的SHA-256 -> 已写入的对象, 见PDFWriter.setDeduplicate() */
+	private HashMap<BigInteger, PDFIndirectObject> dedup;
+	private MessageDigest digest;
+	private ByteBuffer serialized;
+
+	/** 去重统计: 计算过hash的对象数, 命中数, 节省的字节数(未计入obj头尾) */
+	private int dedupHashed = 0;
+	private int dedupHits = 0;
+	private long dedupBytesSaved = 0;
+
+	/**
+	 * 使用压缩线程池时, 按添加顺序等待写入的对象. 流在线程池中压缩, 写入仍在当前线程按顺序进行,
+	 * 所以偏移量和xref与串行压缩时完全相同
+	 */
+	private final LinkedList<PendingObject> pending = new LinkedList<PendingObject>();
+
+	private static class PendingObject {
+		PDFIndirectObject indirect;
+		int refNumber;
+		int generation;
+		/** 非流对象在添加时序列化, 之后的修改不影响输出 */
+		byte[] content;
+		/** 流的压缩任务 */
+		FutureTask<Object> task;
+	}
+
 	public PDFBody(final PDFWriter writer) {
-		xrefs = new TreeSet<PDFCrossReference>();
-		xrefs.add(new PDFCrossReference(0, 0, PDFConstant.MAX_GEN));
-		position = writer.getOs().getCounter();
+		xrefs = new SparseLongArray();
+		addXref(0, PDFCrossReference.pack(0, 0, PDFConstant.MAX_GEN));
+		position = writer.getOs() == null ? 0 : writer.getOs().getCounter();
 		refnum = 1;
 		this.writer = writer;
 	}
@@ -73,7 +113,23 @@ public class PDFBody {
 	}
 
 	public int size() {
-		return Math.max(xrefs.last().getRefnum() + 1, refnum);
+		return Math.max(xrefs.lastIndex() + 1, refnum);
+	}
+
+	/**
+	 * 对象号还没有xref条目时添加
+	 */
+	private void addXref(final int number, final long entry) {
+		if (xrefs.get(number) == 0) {
+			xrefs.set(number, entry);
+		}
+	}
+
+	/**
+	 * 添加或替换对象号的xref条目
+	 */
+	private void setXref(final int number, final long entry) {
+		xrefs.set(number, entry);
 	}
 
 
@@ -92,11 +148,58 @@ public class PDFBody {
 	 */
 
 	public PDFIndirectObject add(final PDFObj object) throws IOException {
-		return add(object, getIndirectReferenceNumber());
+		return add(object, true);
 	}
 
 	public PDFIndirectObject add(final PDFObj object, final boolean inObjStm) throws IOException {
-		return add(object, getIndirectReferenceNumber(), 0, inObjStm);
+		if (!writer.isDeduplicate() || !canDeduplicate(object)) {
+			return add(object, getIndirectReferenceNumber(), 0, inObjStm);
+		}
+		// 只有新编号的对象才去重, 指定了编号的对象(例如修改后的页面)必须按原编号写入
+		if (dedup == null) {
+			dedup = new HashMap<BigInteger, PDFIndirectObject>();
+			serialized = new ByteBuffer();
+			try {
+				digest = MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IOException(e.getMessage());
+			}
+		}
+		serialized.reset();
+		object.write(serialized);
+		digest.update(serialized.getBuffer(), 0, serialized.size());
+		BigInteger key = new BigInteger(1, digest.digest());
+		++dedupHashed;
+		PDFIndirectObject indirect = dedup.get(key);
+		if (indirect != null) {
+			++dedupHits;
+			dedupBytesSaved += serialized.size();
+			return indirect;
+		}
+		// 延迟压缩的流序列化的是压缩前的内容, 只用于hash
+		boolean deferred = object.isStream() && ((PDFStream) object).isCompressDeferred();
+		indirect = add(object, getIndirectReferenceNumber(), 0, inObjStm, deferred ? null : serialized);
+		dedup.put(key, indirect);
+		return indirect;
+	}
+
+	/**
+	 * 内容来自InputStream的流只能写一次, 不能预先序列化
+	 */
+	private static boolean canDeduplicate(final PDFObj object) {
+		return object != null && !(object.isStream() && ((PDFStream) object).hasInputStream());
+	}
+
+	public int getDedupHashed() {
+		return dedupHashed;
+	}
+
+	public int getDedupHits() {
+		return dedupHits;
+	}
+
+	public long getDedupBytesSaved() {
+		return dedupBytesSaved;
 	}
 
 	/**
@@ -110,7 +213,7 @@ public class PDFBody {
 
 	public int getIndirectReferenceNumber() {
 		int n = refnum++;
-		xrefs.add(new PDFCrossReference(n, 0, PDFConstant.MAX_GEN));
+		addXref(n, PDFCrossReference.pack(0, 0, PDFConstant.MAX_GEN));
 		return n;
 	}
 
@@ -143,134 +246,313 @@ public class PDFBody {
 	}
 
 	public PDFIndirectObject add(final PDFObj object, final int refNumber, final int generation, final boolean inObjStm) throws IOException {
-		//        if (inObjStm && object.canBeInObjStm() && writer.isFullCompression()) {
-		//            PDFCrossReference pxref = addToObjStm(object, refNumber);
-		//            PDFIndirectObject indirect = new PDFIndirectObject(refNumber, object, writer);
-		//            if (!xrefs.add(pxref)) {
-		//                xrefs.remove(pxref);
-		//                xrefs.add(pxref);
-		//            }
-		//            return indirect;
-		//        }
-		//        else {
-		//            PDFIndirectObject indirect;
-		//            if (writer.isFullCompression()) {
-		//            	System.out.println("[PDFWriter] add-----------------------Write for writer.isFullCompression");
-		//            	indirect = new PDFIndirectObject(refNumber, object, writer);
-		//            	write(indirect, refNumber);
-		//            }
-		//            else {
-		//            	System.out.println("[PDFWriter] add #######################Write for Not writer.isFullCompression");
-		//            	indirect = new PDFIndirectObject(refNumber, generation, object, writer);
-		//            	write(indirect, refNumber, generation);
-		//            }
-		//            return indirect;
-		//        }
-		Logger.Debug("[PDFWriter] add #######################Write for Not writer.isFullCompression");
+		return add(object, refNumber, generation, inObjStm, null);
+	}
+
+	/**
+	 * @param content object已序列化的内容, 为null时由object写入
+	 */
+	private PDFIndirectObject add(final PDFObj object, final int refNumber, final int generation, final boolean inObjStm, final ByteBuffer content) throws IOException {
+		if (object != null && object.isStream()) {
+			PDFStream s = (PDFStream) object;
+			// 内容在写入时才读取的流, /Length先分配编号, 流写完后写入
+			if (s.hasInputStream() && s.getLengthReference() == null) {
+				s.setLengthReference(getPdfIndirectReference());
+			}
+		}
+		if (inObjStm && generation == 0 && canBeInObjStm(object) && writer.isFullCompression()) {
+			int idx = addToObjStm(object, refNumber, content);
+			PDFIndirectObject indirect = new PDFIndirectObject(refNumber, object, writer);
+			setXref(refNumber, PDFCrossReference.pack(2, currentObjNum, idx));
+			return indirect;
+		}
 		PDFIndirectObject indirect = new PDFIndirectObject(refNumber, generation, object, writer);
-		write(indirect, refNumber, generation);
+		final PDFStream stream = object != null && object.isStream() && ((PDFStream) object).isCompressDeferred() ? (PDFStream) object : null;
+		Executor executor = writer.getCompressionExecutor();
+		if (executor == null || (stream == null && pending.isEmpty())) {
+			if (stream != null) {
+				stream.compressDeferred();
+			}
+			write(indirect, refNumber, generation, content);
+			return indirect;
+		}
+		PendingObject p = new PendingObject();
+		p.indirect = indirect;
+		p.refNumber = refNumber;
+		p.generation = generation;
+		if (stream != null) {
+			p.task = new FutureTask<Object>(new Runnable() {
+				public void run() {
+					stream.compressDeferred();
+				}
+			}, null);
+			executor.execute(p.task);
+		} else if (!object.isStream()) {
+			if (content != null) {
+				p.content = content.toByteArray();
+			} else {
+				ByteBuffer buf = new ByteBuffer();
+				object.write(buf);
+				p.content = buf.toByteArray();
+			}
+		}
+		pending.add(p);
+		writePending(false);
 		return indirect;
 	}
 
+	/**
+	 * 按添加顺序写入等待中的对象
+	 * @param all true: 等待所有压缩完成并全部写入; false: 只写入已压缩完的, 等待的流过多时等待最早的一个
+	 * @throws IOException
+	 */
+	public void writePending(final boolean all) throws IOException {
+		try {
+			while (!pending.isEmpty()) {
+				PendingObject p = pending.getFirst();
+				if (p.task != null) {
+					if (!all && !p.task.isDone() && pending.size() <= MAX_PENDING) {
+						return;
+					}
+					p.task.get();
+				}
+				pending.removeFirst();
+				if (p.content != null) {
+					write(p.indirect, p.refNumber, p.generation, p.content, p.content.length);
+				} else {
+					write(p.indirect, p.refNumber, p.generation, null, 0);
+				}
+			}
+		} catch (InterruptedException e) {
+			cancelPending();
+			Thread.currentThread().interrupt();
+			throw new IOException("compression interrupted");
+		} catch (ExecutionException e) {
+			cancelPending();
+			throw new IOException("compression failed: " + e.getCause());
+		} catch (IOException e) {
+			cancelPending();
+			throw e;
+		}
+	}
 
-	//	protected PDFCrossReference addToObjStm(final PDFObj obj, final int nObj) throws IOException {
-	//		if (numObj >= OBJSINSTREAM) {
-	//			flushObjStm();
-	//		}
-	//		
-	//		if (index == null) {
-	//			index = new ByteBuffer();
-	//			streamObjects = new ByteBuffer();
-	//			currentObjNum = getIndirectReferenceNumber();
-	//			numObj = 0;
-	//		}
-	//		int p = streamObjects.size();
-	//		int idx = numObj++;
-	//		PdfEncryption enc = writer.crypto;
-	//		writer.crypto = null;
-	//		obj.write(streamObjects);
-	//		writer.crypto = enc;
-	//		streamObjects.append(' ');
-	//		index.append(nObj).append(' ').append(p).append(' ');
-	//		return new PDFCrossReference(2, nObj, currentObjNum, idx);
-	//	}
-
-	//	public void flushObjStm() throws IOException {
-	//		if (numObj == 0)
-	//			return;
-	//		int first = index.size();
-	//		index.append(streamObjects);
-	//		PDFStream stream = new PDFStream(index.toByteArray());
-	//		stream.flateCompress(writer.getCompressionLevel());
-	//		stream.put(PDFName.TYPE, PDFName.OBJSTM);
-	//		stream.put(PDFName.N, new PDFNumeric(numObj));
-	//		stream.put(PDFName.FIRST, new PDFNumeric(first));
-	//		add(stream, currentObjNum);
-	//		index = null;
-	//		streamObjects = null;
-	//		numObj = 0;
-	//	}
+	/**
+	 * 写入失败时取消还未开始的压缩任务, 等待中的对象不再写入
+	 */
+	private void cancelPending() {
+		for (PendingObject p : pending) {
+			if (p.task != null) {
+				p.task.cancel(false);
+			}
+		}
+		pending.clear();
+	}
+
+	/**
+	 * 流不能放入ObjStm
+	 */
+	private static boolean canBeInObjStm(final PDFObj object) {
+		return object != null && !object.isStream();
+	}
+
+	/**
+	 * 将对象写入当前的ObjStm, 满OBJSINSTREAM个时输出
+	 * @return type 2的xref条目: 所在ObjStm的对象号和序号
+	 */
+	protected PDFCrossReference addToObjStm(final PDFObj obj, final int nObj) throws IOException {
+		int idx = addToObjStm(obj, nObj, null);
+		return new PDFCrossReference(2, nObj, currentObjNum, idx);
+	}
+
+	/**
+	 * @return 对象在当前ObjStm(currentObjNum)中的序号
+	 */
+	private int addToObjStm(final PDFObj obj, final int nObj, final ByteBuffer content) throws IOException {
+		if (numObj >= OBJSINSTREAM) {
+			flushObjStm();
+		}
+		if (index == null) {
+			index = new ByteBuffer();
+			streamObjects = new ByteBuffer();
+			currentObjNum = getIndirectReferenceNumber();
+			numObj = 0;
+		}
+		int p = streamObjects.size();
+		int idx = numObj++;
+		if (content != null) {
+			streamObjects.append(content);
+		} else {
+			obj.write(streamObjects);
+		}
+		streamObjects.append(' ');
+		index.append(nObj).append(' ').append(p).append(' ');
+		return idx;
+	}
+
+	/**
+	 * 输出当前的ObjStm: /N 对象数, /First 第一个对象在流中的偏移
+	 * @throws IOException
+	 */
+	public void flushObjStm() throws IOException {
+		if (numObj == 0) {
+			return;
+		}
+		int first = index.size();
+		index.append(streamObjects);
+		PDFStream stream = new PDFStream(index.toByteArray());
+		stream.deferFlateCompress(writer.getCompressionLevel());
+		stream.setCompressionPolicy(writer.getCompressionPolicy(), CompressionPolicy.StreamType.OBJECT_STREAM);
+		stream.put(PDFName.TYPE, PDFName.OBJSTM);
+		stream.put(PDFName.N, new PDFNumeric(numObj));
+		stream.put(PDFName.FIRST, new PDFNumeric(first));
+		int objNum = currentObjNum;
+		index = null;
+		streamObjects = null;
+		numObj = 0;
+		add(stream, objNum);
+	}
 
 	protected void write(final PDFIndirectObject indirect, final int refNumber) throws IOException {
-		PDFCrossReference pxref = new PDFCrossReference(refNumber, position);
-		Logger.Debug("PDFCrossReference=" + pxref.type + " " + pxref.refnum + " "  + pxref.generation + " "  + pxref.offset);//TODO
-		if (!xrefs.add(pxref)) {
-			xrefs.remove(pxref);
-			xrefs.add(pxref);
+		if (Logger.isDebugLevel()) {
+			Logger.Debug("PDFCrossReference=1 " + refNumber + " 0 " + position);//TODO
 		}
+		setXref(refNumber, PDFCrossReference.pack(1, position, 0));
 		indirect.writeTo(writer.getOs());
 		position = writer.getOs().getCounter();
 	}
 
 	protected void write(final PDFIndirectObject indirect, final int refNumber, final int generation) throws IOException {
-		PDFCrossReference pxref = new PDFCrossReference(refNumber, position, generation);
-		Logger.Debug("[PDFWriter] write >>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>"
-				+ "XPDFCrossReference=" + pxref.type + " " + pxref.refnum + " "  + pxref.generation + " "  + pxref.offset);//TODO
-		if (!xrefs.add(pxref)) {
-			xrefs.remove(pxref);
-			xrefs.add(pxref);
+		write(indirect, refNumber, generation, null);
+	}
+
+	private void write(final PDFIndirectObject indirect, final int refNumber, final int generation, final ByteBuffer content) throws IOException {
+		if (content != null) {
+			write(indirect, refNumber, generation, content.getBuffer(), content.size());
+		} else {
+			write(indirect, refNumber, generation, null, 0);
 		}
+	}
 
-		Logger.Debug("[PDFWriter] writeTo OutStream Begin>>>>>>>>>>>>>>>" + indirect);//TODO
-		indirect.writeTo(writer.getOs());
+	private void write(final PDFIndirectObject indirect, final int refNumber, final int generation, final byte[] content, final int len) throws IOException {
+		// generation为MAX_GEN的是free条目
+		int type = generation == PDFConstant.MAX_GEN ? 0 : 1;
+		if (Logger.isDebugLevel()) {
+			Logger.Debug("[PDFWriter] write >>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>"
+					+ "XPDFCrossReference=" + type + " " + refNumber + " "  + generation + " "  + position);//TODO
+		}
+		setXref(refNumber, PDFCrossReference.pack(type, position, generation));
+
+		if (Logger.isDebugLevel()) {
+			Logger.Debug("[PDFWriter] writeTo OutStream Begin>>>>>>>>>>>>>>>" + indirect);//TODO
+		}
+		if (content != null) {
+			indirect.writeTo(writer.getOs(), content, 0, len);
+		} else {
+			indirect.writeTo(writer.getOs());
+		}
 		Logger.Debug("[PDFWriter] writeTo OutStream End<<<<<<<<<<<<<<<<<<<<");//TODO
 		position = writer.getOs().getCounter();
+		PDFObj object = indirect.getObject();
+		if (object != null && object.isStream() && ((PDFStream) object).hasInputStream()) {
+			writeLength((PDFStream) object);
+		}
 	}
 
+	/**
+	 * 紧接在流之后写入其/Length间接对象, 长度在流写完后才知道
+	 */
+	private void writeLength(final PDFStream stream) throws IOException {
+		PDFIndirectReference ref = stream.getLengthReference();
+		PDFIndirectObject length = new PDFIndirectObject(ref.getNumber(), ref.getGeneration(), new PDFNumeric(stream.getInputStreamLength()), writer);
+		write(length, ref.getNumber(), ref.getGeneration(), null, 0);
+	}
 
+
+	/**
+	 * 写入交叉引用: 普通模式为xref表(之后由PDFTrailer写trailer),
+	 * full compression模式先输出未满的ObjStm, 再写/Type /XRef的xref流, 其字典即trailer, offset()为xref流的位置
+	 */
 	public void writeCrossReferenceTable(final OutputStream os, final PDFIndirectReference root, final PDFIndirectReference info, final PDFIndirectReference encryption, final PDFObj fileID, final long prevxref) throws IOException {
 		int refNumber = 0;
-		PDFCrossReference entry = xrefs.first();
-		int first = entry.getRefnum();
-		int len = 0;
-		ArrayList<Integer> sections = new ArrayList<Integer>();
-		for (PDFCrossReference PDFCrossReference : xrefs) {
-			entry = PDFCrossReference;
-			if (first + len == entry.getRefnum())
-				++len;
-			else {
-				sections.add(Integer.valueOf(first));
-				sections.add(Integer.valueOf(len));
-				first = entry.getRefnum();
-				len = 1;
+		if (writer.isFullCompression()) {
+			flushObjStm();
+		}
+		writePending(true);
+		if (writer.isFullCompression()) {
+			refNumber = getIndirectReferenceNumber();
+			// getIndirectReferenceNumber()已写入空闲条目, 须替换为指向xref流自身的条目
+			setXref(refNumber, PDFCrossReference.pack(1, position, 0));
+		}
+		// 按对象号顺序, 连续的一段为一个子节: sections中依次为(起始对象号, 个数)
+		int count = 0;
+		for (int k = xrefs.nextIndex(0), prev = -2; k >= 0; prev = k, k = xrefs.nextIndex(k + 1)) {
+			if (k != prev + 1)
+				count += 2;
+		}
+		int sections[] = new int[count];
+		int c = 0;
+		for (int k = xrefs.nextIndex(0), prev = -2; k >= 0; prev = k, k = xrefs.nextIndex(k + 1)) {
+			if (k != prev + 1) {
+				sections[c] = k;
+				c += 2;
+			}
+			++sections[c - 1];
+		}
+		if (writer.isFullCompression()) {
+			// 第二个字段的字节数, 由最大的偏移量(即xref流自身的位置)或ObjStm对象号决定
+			long max = Math.max(position, size());
+			int mid = 1;
+			while (mid < 8 && (max >>> (8 * mid)) != 0) {
+				++mid;
+			}
+			ByteBuffer buf = new ByteBuffer(xrefs.size() * (mid + 3));
+			for (int k = xrefs.nextIndex(0); k >= 0; k = xrefs.nextIndex(k + 1)) {
+				PDFCrossReference.write(mid, buf, xrefs.get(k));
 			}
+			PDFStream xr = new PDFStream(buf.toByteArray());
+			buf = null;
+			xr.deferFlateCompress(writer.getCompressionLevel());
+			xr.setCompressionPolicy(writer.getCompressionPolicy(), CompressionPolicy.StreamType.XREF_STREAM);
+			xr.compressDeferred();
+			xr.put(PDFName.SIZE, new PDFNumeric(size()));
+			xr.put(PDFName.ROOT, root);
+			if (info != null) {
+				xr.put(PDFName.INFO, info);
+			}
+			if (encryption != null) {
+				xr.put(PDFName.ENCRYPT, encryption);
+			}
+			if (fileID != null) {
+				xr.put(PDFName.ID, fileID);
+			}
+			xr.put(PDFName.W, new PDFArray(new int[]{1, mid, 2}));
+			xr.put(PDFName.TYPE, PDFName.XREF);
+			PDFArray idx = new PDFArray();
+			for (int k = 0; k < count; ++k) {
+				idx.add(new PDFNumeric(sections[k]));
+			}
+			xr.put(PDFName.INDEX, idx);
+			if (prevxref > 0) {
+				xr.put(PDFName.PREV, new PDFNumeric(prevxref));
+			}
+			PDFIndirectObject indirect = new PDFIndirectObject(refNumber, xr, writer);
+			indirect.writeTo(writer.getOs());
+			return;
 		}
-		sections.add(Integer.valueOf(first));
-		sections.add(Integer.valueOf(len));
 		Logger.Debug("xref\n");//TODO
 		os.write(StringUtils.getISOBytes("xref\n"));
-		Iterator<PDFCrossReference> i = xrefs.iterator();
-		for (int k = 0; k < sections.size(); k += 2) {
-			first = sections.get(k).intValue();
-			len = sections.get(k + 1).intValue();
-			os.write(StringUtils.getISOBytes(String.valueOf(first)));
-			os.write(StringUtils.getISOBytes(" "));
-			os.write(StringUtils.getISOBytes(String.valueOf(len)));
+		for (int k = 0; k < count; k += 2) {
+			int first = sections[k];
+			int len = sections[k + 1];
+			ByteBuffer.writeLong(os, first);
+			os.write(' ');
+			ByteBuffer.writeLong(os, len);
 			os.write('\n');
-			Logger.Debug(String.valueOf(first) + " " + String.valueOf(len) + "\n");//TODO
-			while (len-- > 0) {
-				entry = i.next();
-				entry.write(os);
+			if (Logger.isDebugLevel()) {
+				Logger.Debug(String.valueOf(first) + " " + String.valueOf(len) + "\n");//TODO
+			}
+			for (int n = first; n < first + len; ++n) {
+				PDFCrossReference.write(os, xrefs.get(n));
 			}
 		}
 	}
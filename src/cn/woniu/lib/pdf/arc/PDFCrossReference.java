@@ -22,6 +22,17 @@ import cn.woniu.lib.pdf.util.StringUtils;
  */
 public class PDFCrossReference implements Comparable<PDFCrossReference> {
 
+	/** xref表中每条记录的长度 */
+	private static final int ROW_SIZE = 20;
+
+	/** 每个线程复用的xref记录, 空格和换行固定不变 */
+	private static final ThreadLocal<byte[]> ROW = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return StringUtils.getISOBytes("0000000000 00000 n \n");
+		}
+	};
+
 	protected final int type;
 
 	/**	Byte offset in the PDF file. */
@@ -33,7 +44,8 @@ public class PDFCrossReference implements Comparable<PDFCrossReference> {
 	protected final int generation;
 
 	public PDFCrossReference(final int refnum, final long offset, final int generation) {
-		type = 0;
+		// generation为MAX_GEN的是free条目, 写入xref流时type为0
+		type = generation == PDFConstant.MAX_GEN ? 0 : 1;
 		this.offset = offset;
 		this.refnum = refnum;
 		this.generation = generation;
@@ -63,6 +75,39 @@ public class PDFCrossReference implements Comparable<PDFCrossReference> {
         return refnum;
     }
 
+    /**
+     * 本条目压缩为一个long, 见{@link #pack(int, long, int)}
+     */
+    public long pack() {
+        return pack(type, offset, generation);
+    }
+
+    /**
+     * 
+     * @Title: pack  
+     * @Description: 把xref条目的三个字段压缩为一个long: offset(或ObjStm的对象号)占高46位, type占2位, generation(或在ObjStm中的序号)占低16位  
+     *
+     * @param type 0: free, 1: 普通对象, 2: ObjStm中的对象
+     * @param offset
+     * @param generation
+     * @return
+     */
+    public static long pack(final int type, final long offset, final int generation) {
+        return offset << 18 | (long) (type & 0x3) << 16 | generation & 0xffff;
+    }
+
+    public static int unpackType(final long entry) {
+        return (int) (entry >>> 16) & 0x3;
+    }
+
+    public static long unpackOffset(final long entry) {
+        return entry >>> 18;
+    }
+
+    public static int unpackGeneration(final long entry) {
+        return (int) entry & 0xffff;
+    }
+
 	public int compareTo(final PDFCrossReference other) {
 		return refnum < other.refnum ? -1 : refnum==other.refnum ? 0 : 1;
 	}
@@ -87,15 +132,37 @@ public class PDFCrossReference implements Comparable<PDFCrossReference> {
      * @throws IOException
      */
     public void write(final OutputStream os) throws IOException {
-        StringBuffer off = new StringBuffer("0000000000").append(offset);
-        off.delete(0, off.length() - 10);
-        StringBuffer gen = new StringBuffer("00000").append(generation);
-        gen.delete(0, gen.length() - 5);
-
-        off.append(' ').append(gen).append(generation == PDFConstant.MAX_GEN ? " f \n" : " n \n");
-        os.write(StringUtils.getISOBytes(off.toString()));
-        
-        Logger.Debug(off.toString());//TODO
+        write(os, offset, generation);
+    }
+
+    /**
+     * 写xref表中pack()压缩的条目
+     * @param os
+     * @param entry
+     * @throws IOException
+     */
+    public static void write(final OutputStream os, final long entry) throws IOException {
+        write(os, unpackOffset(entry), unpackGeneration(entry));
+    }
+
+    private static void write(final OutputStream os, final long offset, final int generation) throws IOException {
+        // 固定20字节: 10位偏移, 空格, 5位generation, " n \n"或" f \n"
+        byte row[] = ROW.get();
+        long off = offset;
+        for (int k = 9; k >= 0; --k) {
+            row[k] = (byte) ('0' + off % 10);
+            off /= 10;
+        }
+        int gen = generation;
+        for (int k = 15; k >= 11; --k) {
+            row[k] = (byte) ('0' + gen % 10);
+            gen /= 10;
+        }
+        row[17] = (byte) (generation == PDFConstant.MAX_GEN ? 'f' : 'n');
+        os.write(row, 0, ROW_SIZE);
+        if (Logger.isDebugLevel()) {
+            Logger.Debug(new String(row, 0, ROW_SIZE - 1));
+        }
     }
 
     /**
@@ -104,7 +171,22 @@ public class PDFCrossReference implements Comparable<PDFCrossReference> {
      * @param os
      * @throws IOException
      */
-    public void write(int midSize, final OutputStream os) throws IOException {
+    public void write(final int midSize, final OutputStream os) throws IOException {
+        write(midSize, os, type, offset, generation);
+    }
+
+    /**
+     * 写xref流中pack()压缩的条目
+     * @param midSize
+     * @param os
+     * @param entry
+     * @throws IOException
+     */
+    public static void write(final int midSize, final OutputStream os, final long entry) throws IOException {
+        write(midSize, os, unpackType(entry), unpackOffset(entry), unpackGeneration(entry));
+    }
+
+    private static void write(int midSize, final OutputStream os, final int type, final long offset, final int generation) throws IOException {
         os.write((byte)type);
         while (--midSize >= 0) {
             os.write((byte)(offset >>> 8 * midSize & 0xff));
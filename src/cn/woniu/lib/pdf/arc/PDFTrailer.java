@@ -69,6 +69,16 @@ public class PDFTrailer extends PDFDictionary {
 		os.write(StringUtils.getISOBytes("trailer\n"));
 		super.write(os);
 		os.write('\n');
+		writeStartXref(os, offset);
+	}
+
+	/**
+	 * 写入startxref和%%EOF, xref流(full compression)没有trailer时直接调用
+	 * @param os
+	 * @param offset xref表或xref流的位置
+	 * @throws IOException
+	 */
+	public static void writeStartXref(final OutputStream os, final long offset) throws IOException {
 		PDFWriter.writeKeyInfo(os);
 		os.write(StringUtils.getISOBytes("startxref\n"));
 		os.write(StringUtils.getISOBytes(String.valueOf(offset)));
@@ -40,6 +40,14 @@ public class ByteBuffer extends OutputStream {
     public static boolean HIGH_PRECISION = false;
     private static final DecimalFormatSymbols dfs = new DecimalFormatSymbols(Locale.US);
     
+    /** 每个线程复用的缓冲, writeLong()/writeDouble()向非ByteBuffer输出时使用 */
+    private static final ThreadLocal<ByteBuffer> scratch = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return new ByteBuffer(32);
+        }
+    };
+    
     /** Creates new ByteBuffer with capacity 128 */
     public ByteBuffer() {
         this(128);
@@ -235,7 +243,7 @@ public class ByteBuffer extends OutputStream {
      * @return a reference to this <CODE>ByteBuffer</CODE> object
      */
     public ByteBuffer append(int i) {
-        return append((double)i);
+        return append((long)i);
     }
     
     /**
@@ -244,7 +252,67 @@ public class ByteBuffer extends OutputStream {
      * @return a reference to this <CODE>ByteBuffer</CODE> object
      */
     public ByteBuffer append(long i) {
-        return append(Long.toString(i));
+        if (i == Long.MIN_VALUE) {
+            return append(Long.toString(i));
+        }
+        // 直接按位写入, 不生成String
+        int size = 1;
+        if (i < 0) {
+            append_i('-');
+            i = -i;
+        }
+        for (long v = i; v >= 10; v /= 10) {
+            ++size;
+        }
+        int newcount = count + size;
+        if (newcount > buf.length) {
+            byte newbuf[] = new byte[Math.max(buf.length << 1, newcount)];
+            System.arraycopy(buf, 0, newbuf, 0, count);
+            buf = newbuf;
+        }
+        for (int k = newcount - 1; k >= count; --k) {
+            buf[k] = bytes[(int) (i % 10)];
+            i /= 10;
+        }
+        count = newcount;
+        return this;
+    }
+    
+    /**
+     * 把整数的十进制表示写到os, 不生成String
+     * @param os
+     * @param i
+     * @throws IOException
+     */
+    public static void writeLong(OutputStream os, long i) throws IOException {
+        if (os instanceof ByteBuffer) {
+            ((ByteBuffer) os).append(i);
+            return;
+        }
+        ByteBuffer buf = scratch.get();
+        buf.reset();
+        buf.append(i);
+        os.write(buf.buf, 0, buf.count);
+    }
+    
+    /**
+     * 把实数按PDF的格式(见formatDouble())写到os
+     * @param os
+     * @param d
+     * @throws IOException
+     */
+    public static void writeDouble(OutputStream os, double d) throws IOException {
+        ByteBuffer buf = os instanceof ByteBuffer ? (ByteBuffer) os : scratch.get();
+        if (buf != os) {
+            buf.reset();
+        }
+        String s = formatDouble(d, buf);
+        if (s != null) {
+            buf.append(s);
+        }
+        if (buf != os) {
+            os.write(buf.buf, 0, buf.count);
+        }
     }
     
     public ByteBuffer append(byte b) {
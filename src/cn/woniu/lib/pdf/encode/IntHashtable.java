@@ -11,6 +11,7 @@ import java.util.NoSuchElementException;
 /** 
  * @ClassName: IntHashtable <br/> 
  * @Description: 参考了iTextPdf  <br/> 
+ * int->int的开放定址(线性探测)哈希表, 键和值存放在int数组中, 不为每个条目分配对象.
  * 
  * @author woniu1983 
  * @date: 2018年5月10日 下午4:17:32 <br/>
@@ -19,10 +20,17 @@ import java.util.NoSuchElementException;
  */
 public class IntHashtable implements Cloneable {
 
+    /** 线性探测时装载因子不能接近1 */
+    private static final float MAX_LOAD_FACTOR = 0.9f;
+
     /***
-     * The hash table data.
+     * The keys, the slot is in use when <code>used[i]</code> is true.
      */
-    private transient Entry table[];
+    private transient int keys[];
+
+    private transient int values[];
+
+    private transient boolean used[];
 
     /***
      * The total number of entries in the hash table.
@@ -46,7 +54,7 @@ public class IntHashtable implements Cloneable {
 
     /***
      * <p>Constructs a new, empty hashtable with a default capacity and load
-     * factor, which is <code>20</code> and <code>0.75</code> respectively.</p>
+     * factor, which is <code>150</code> and <code>0.75</code> respectively.</p>
      */
     public IntHashtable() {
         this(150, 0.75f);
@@ -69,7 +77,7 @@ public class IntHashtable implements Cloneable {
      * capacity and the specified load factor.</p>
      *
      * @param initialCapacity the initial capacity of the hashtable.
-     * @param loadFactor the load factor of the hashtable.
+     * @param loadFactor the load factor of the hashtable, at most 0.9.
      * @throws IllegalArgumentException  if the initial capacity is less
      *             than zero, or if the load factor is nonpositive.
      */
@@ -81,12 +89,47 @@ public class IntHashtable implements Cloneable {
         if (loadFactor <= 0) {
             throw new IllegalArgumentException("illegal.load.1 : " + String.valueOf(loadFactor));
         }
-        if (initialCapacity == 0) {
-            initialCapacity = 1;
+        this.loadFactor = Math.min(loadFactor, MAX_LOAD_FACTOR);
+        allocate(tableSize(initialCapacity));
+    }
+
+    /**
+     * 容量为2的幂, 且按装载因子能放下capacity个条目
+     */
+    private int tableSize(int capacity) {
+        int size = 2;
+        while (size < (1 << 30) && (int) (size * loadFactor) < capacity) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    private void allocate(int size) {
+        keys = new int[size];
+        values = new int[size];
+        used = new boolean[size];
+        threshold = Math.min((int) (size * loadFactor), size - 1);
+    }
+
+    /**
+     * 打散连续的对象号, 混合高位后作为起始位置
+     */
+    static int slot(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * 键所在的位置, 不存在时为-1
+     */
+    private int indexOf(int key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); used[i]; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return i;
+            }
         }
-        this.loadFactor = loadFactor;
-        table = new Entry[initialCapacity];
-        threshold = (int) (initialCapacity * loadFactor);
+        return -1;
     }
 
     /***
@@ -113,31 +156,21 @@ public class IntHashtable implements Cloneable {
      * This operation is more expensive than the <code>containsKey</code>
      * method.</p>
      *
-     * <p>Note that this method is identical in functionality to containsValue,
-     * (which is part of the Map interface in the collections framework).</p>
-     *
      * @param      value   a value to search for.
      * @return     <code>true</code> if and only if some key maps to the
-     *             <code>value</code> argument in this hashtable as
-     *             determined by the <tt>equals</tt> method;
+     *             <code>value</code> argument in this hashtable;
      *             <code>false</code> otherwise.
-     * @throws  NullPointerException  if the value is <code>null</code>.
      * @see        #containsKey(int)
      * @see        #containsValue(int)
-     * @see        java.util.Map
      */
     public boolean contains(int value) {
-
-        Entry tab[] = table;
-        for (int i = tab.length; i-- > 0;) {
-            for (Entry e = tab[i]; e != null; e = e.next) {
-                if (e.value == value) {
-                    return true;
-                }
+        for (int i = keys.length; i-- > 0;) {
+            if (used[i] && values[i] == value) {
+                return true;
             }
         }
         return false;
-     }
+    }
 
     /***
      * <p>Returns <code>true</code> if this HashMap maps one or more keys
@@ -160,20 +193,11 @@ public class IntHashtable implements Cloneable {
      *
      * @param  key  possible key.
      * @return <code>true</code> if and only if the specified int is a
-     *    key in this hashtable, as determined by the <tt>equals</tt>
-     *    method; <code>false</code> otherwise.
+     *    key in this hashtable; <code>false</code> otherwise.
      * @see #contains(int)
      */
     public boolean containsKey(int key) {
-        Entry tab[] = table;
-        int hash = key;
-        int index = (hash & 0x7FFFFFFF) % tab.length;
-        for (Entry e = tab[index]; e != null; e = e.next) {
-            if (e.hash == hash && e.key == key) {
-                return true;
-            }
-        }
-        return false;
+        return indexOf(key) >= 0;
     }
 
     /***
@@ -186,38 +210,10 @@ public class IntHashtable implements Cloneable {
      * @see     #put(int, int)
      */
     public int get(int key) {
-        Entry tab[] = table;
-        int hash = key;
-        int index = (hash & 0x7FFFFFFF) % tab.length;
-        for (Entry e = tab[index]; e != null; e = e.next) {
-            if (e.hash == hash && e.key == key) {
-                return e.value;
-            }
-        }
-        return 0;
+        int i = indexOf(key);
+        return i < 0 ? 0 : values[i];
     }
 
-    /***
-     * <p>Returns thes value to which the specified key is mapped in this map.</p>
-     *
-     * @param   key   a key in the hashtable.
-     * @return  the values to which the key is mapped in this hashtable;
-     *          <code>null</code> if the key is not mapped to any value in
-     *          this hashtable.
-     * @see     #put(int, int)
-    public ArrayList<Integer> getValues(int key) {
-        Entry tab[] = table;
-        int hash = key;
-        int index = (hash & 0x7FFFFFFF) % tab.length;
-        for (Entry e = tab[index]; e != null; e = e.next) {
-            if (e.hash == hash && e.key == key) {
-                return e.values;
-            }
-        }
-        return null;
-    }
-     */
-    
     /***
      * <p>Increases the capacity of and internally reorganizes this
      * hashtable, in order to accommodate and access its entries more
@@ -228,31 +224,27 @@ public class IntHashtable implements Cloneable {
      * factor.</p>
      */
     protected void rehash() {
-        int oldCapacity = table.length;
-        Entry oldMap[] = table;
-
-        int newCapacity = oldCapacity * 2 + 1;
-        Entry newMap[] = new Entry[newCapacity];
-
-        threshold = (int) (newCapacity * loadFactor);
-        table = newMap;
-
-        for (int i = oldCapacity; i-- > 0;) {
-            for (Entry old = oldMap[i]; old != null;) {
-                Entry e = old;
-                old = old.next;
-
-                int index = (e.hash & 0x7FFFFFFF) % newCapacity;
-                e.next = newMap[index];
-                newMap[index] = e;
+        int oldKeys[] = keys;
+        int oldValues[] = values;
+        boolean oldUsed[] = used;
+        allocate(oldKeys.length * 2);
+        int mask = keys.length - 1;
+        for (int k = oldKeys.length; k-- > 0;) {
+            if (oldUsed[k]) {
+                int i = slot(oldKeys[k], mask);
+                while (used[i]) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[k];
+                values[i] = oldValues[k];
+                used[i] = true;
             }
         }
     }
 
     /***
      * <p>Maps the specified <code>key</code> to the specified
-     * <code>value</code> in this hashtable. The key cannot be
-     * <code>null</code>. </p>
+     * <code>value</code> in this hashtable.</p>
      *
      * <p>The value can be retrieved by calling the <code>get</code> method
      * with a key that is equal to the original key.</p>
@@ -260,37 +252,33 @@ public class IntHashtable implements Cloneable {
      * @param key     the hashtable key.
      * @param value   the value.
      * @return the previous value of the specified key in this hashtable,
-     *         or <code>null</code> if it did not have one.
-     * @throws  NullPointerException  if the key is <code>null</code>.
+     *         or 0 if it did not have one.
      * @see     #get(int)
      */
     public int put(int key, int value) {
-        // Makes sure the key is not already in the hashtable.
-        Entry tab[] = table;
-        int hash = key;
-        int index = (hash & 0x7FFFFFFF) % tab.length;
-        for (Entry e = tab[index]; e != null; e = e.next) {
-            if (e.hash == hash && e.key == key) {
-                int old = e.value;
-                //e.addValue(old);
-                e.value = value;
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        for (; used[i]; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                int old = values[i];
+                values[i] = value;
                 return old;
             }
         }
-
         if (count >= threshold) {
             // Rehash the table if the threshold is exceeded
             rehash();
-
-            tab = table;
-            index = (hash & 0x7FFFFFFF) % tab.length;
+            mask = keys.length - 1;
+            i = slot(key, mask);
+            while (used[i]) {
+                i = (i + 1) & mask;
+            }
         }
-
-         // Creates the new entry.
-         Entry e = new Entry(hash, key, value, tab[index]);
-         tab[index] = e;
-         count++;
-         return 0;
+        keys[i] = key;
+        values[i] = value;
+        used[i] = true;
+        count++;
+        return 0;
     }
 
     /***
@@ -302,75 +290,60 @@ public class IntHashtable implements Cloneable {
      *
      * @param   key   the key that needs to be removed.
      * @return  the value to which the key had been mapped in this hashtable,
-     *          or <code>null</code> if the key did not have a mapping.
+     *          or 0 if the key did not have a mapping.
      */
     public int remove(int key) {
-        Entry tab[] = table;
-        int hash = key;
-        int index = (hash & 0x7FFFFFFF) % tab.length;
-        for (Entry e = tab[index], prev = null; e != null; prev = e, e = e.next) {
-            if (e.hash == hash && e.key == key) {
-                if (prev != null) {
-                    prev.next = e.next;
-                } else {
-                    tab[index] = e.next;
-                }
-                count--;
-                int oldValue = e.value;
-                e.value = 0;
-                return oldValue;
+        int i = indexOf(key);
+        if (i < 0) {
+            return 0;
+        }
+        int oldValue = values[i];
+        // 后面同一探测序列上的条目前移, 不留删除标记
+        int mask = keys.length - 1;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (!used[j]) {
+                break;
+            }
+            int k = slot(keys[j], mask);
+            // k在(i, j]之间(循环意义上)时, 条目j不能移到i
+            if (i <= j ? (i < k && k <= j) : (i < k || k <= j)) {
+                continue;
             }
+            keys[i] = keys[j];
+            values[i] = values[j];
+            i = j;
         }
-        return 0;
+        used[i] = false;
+        keys[i] = 0;
+        values[i] = 0;
+        count--;
+        return oldValue;
     }
 
     /***
      * <p>Clears this hashtable so that it contains no keys.</p>
      */
     public void clear() {
-    	Entry tab[] = table;
-        for (int index = tab.length; --index >= 0;) {
-            tab[index] = null;
-        }
+        Arrays.fill(used, false);
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, 0);
         count = 0;
-	}
+    }
 
     /***
-     * <p>Innerclass that acts as a datastructure to create a new entry in the
-     * table.</p>
+     * <p>An entry returned by the iterator, created while iterating.</p>
      */
     static class Entry {
-        int hash;
         int key;
         int value;
-        //ArrayList<Integer> values = new ArrayList<Integer>();
-        Entry next;
-
-        /***
-         * <p>Create a new entry with the given values.</p>
-         *
-         * @param hash The code used to hash the int with
-         * @param key The key used to enter this in the table
-         * @param value The value for this key
-         * @param next A reference to the next entry in the table
-         */
-        protected Entry(int hash, int key, int value, Entry next) {
-            this.hash = hash;
+
+        protected Entry(int key, int value) {
             this.key = key;
             this.value = value;
-            this.next = next;
-            //values.add(value);
-        }
-/*
-        public void addValue(int old) {
-        	if (!(hash == 0 || values.contains(old)))
-        		values.add(old);
         }
-        
-        public ArrayList<Integer> getValues() {
-        	return values;
-        }
-*/        
+
         // extra methods for inner class Entry by Paulo
         public int getKey() {
         	return key;
@@ -380,45 +353,42 @@ public class IntHashtable implements Cloneable {
         }
         @Override
         protected Object clone() {
-        	Entry entry = new Entry(hash, key, value, next != null ? (Entry)next.clone() : null);
-        	return entry;
+        	return new Entry(key, value);
         }
     }
 
     // extra inner class by Paulo
     static class IntHashtableIterator implements Iterator<Entry> {
         int index;
-        Entry table[];
-        Entry entry;
+        int keys[];
+        int values[];
+        boolean used[];
+
+        IntHashtableIterator(int keys[], int values[], boolean used[]) {
+        	this.keys = keys;
+        	this.values = values;
+        	this.used = used;
+        	this.index = keys.length;
+        	advance();
+        }
 
-        IntHashtableIterator(Entry table[]) {
-        	this.table = table;
-        	this.index = table.length;
+        private void advance() {
+        	while (--index >= 0 && !used[index]);
         }
+
         public boolean hasNext() {
-        	if (entry != null) {
-        		return true;
-        	}
-        	while (index-- > 0) {
-        	    if ((entry = table[index]) != null) {
-        	        return true;
-        	    }
-        	}
-        	return false;
+        	return index >= 0;
         }
 
         public Entry next() {
-            if (entry == null) {
-                while (index-- > 0 && (entry = table[index]) == null);
-            }
-            if (entry != null) {
-            	Entry e = entry;
-            	entry = e.next;
-            	return e;
-            }
-        	throw new NoSuchElementException("inthashtableiterator");
+        	if (index < 0) {
+        		throw new NoSuchElementException("inthashtableiterator");
+        	}
+        	Entry e = new Entry(keys[index], values[index]);
+        	advance();
+        	return e;
         }
-        
+
         public void remove() {
         	throw new UnsupportedOperationException("remove.not.supported");
         }
@@ -427,7 +397,7 @@ public class IntHashtable implements Cloneable {
 // extra methods by Paulo Soares:
 
     public Iterator<Entry> getEntryIterator() {
-        return new IntHashtableIterator(table);
+        return new IntHashtableIterator(keys, values, used);
     }
 
     public int[] toOrderedKeys() {
@@ -439,40 +409,30 @@ public class IntHashtable implements Cloneable {
     public int[] getKeys() {
     	int res[] = new int[count];
     	int ptr = 0;
-    	int index = table.length;
-    	Entry entry = null;
-    	while (true) {
-    		if (entry == null)
-    			while (index-- > 0 && (entry = table[index]) == null);
-    		if (entry == null)
-    			break;
-    		Entry e = entry;
-    		entry = e.next;
-    		res[ptr++] = e.key;
+    	for (int i = keys.length; i-- > 0;) {
+    		if (used[i]) {
+    			res[ptr++] = keys[i];
+    		}
     	}
     	return res;
     }
 
     public int getOneKey() {
-    	if (count == 0)
-    		return 0;
-    	int index = table.length;
-    	Entry entry = null;
-    	while (index-- > 0 && (entry = table[index]) == null);
-    	if (entry == null)
-    		return 0;
-    	return entry.key;
+    	for (int i = keys.length; i-- > 0;) {
+    		if (used[i]) {
+    			return keys[i];
+    		}
+    	}
+    	return 0;
     }
 
     @Override
     public Object clone() {
     	try {
     		IntHashtable t = (IntHashtable)super.clone();
-    		t.table = new Entry[table.length];
-    		for (int i = table.length ; i-- > 0 ; ) {
-    			t.table[i] = table[i] != null
-    			? (Entry)table[i].clone() : null;
-    		}
+    		t.keys = keys.clone();
+    		t.values = values.clone();
+    		t.used = used.clone();
     		return t;
     	} catch (CloneNotSupportedException e) {
     		// this shouldn't happen, since we are Cloneable
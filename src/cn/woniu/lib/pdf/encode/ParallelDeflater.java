@@ -0,0 +1,252 @@
+/** 
+ * Copyright (c) 2018, Woniu1983 All Rights Reserved. 
+ * 
+ */ 
+package cn.woniu.lib.pdf.encode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/** 
+ * @ClassName: ParallelDeflater <br/> 
+ * @Description: 类似pigz的并行deflate: 数据按块分给多个线程各自压缩(raw deflate),  <br/>
+ * 非最后一块以SYNC_FLUSH结束(字节对齐), 可选用前一块末尾32K作为预设字典.
+ * 各块按顺序拼接, 前面加zlib头, 后面加整段数据的Adler-32, 结果仍是一个合法的FlateDecode流.
+ * SYNC_FLUSH是JDK 1.7才有的API, 通过反射调用; 运行在JDK 1.6上时退回单线程压缩.
+ *
+ * @author woniu1983 
+ * @date: 2026年10月17日 下午11:48:06 <br/>
+ * @version  
+ * @since JDK 1.6 
+ */
+public class ParallelDeflater {
+
+	/** 默认块大小, 与pigz相同 */
+	public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+	/** deflate的窗口大小, 预设字典最多这么长 */
+	private static final int DICT_SIZE = 32 * 1024;
+
+	/** Deflater.deflate(byte[], int, int, int), JDK 1.7+ */
+	private static final Method DEFLATE_FLUSH;
+	private static final Integer SYNC_FLUSH;
+
+	static {
+		Method m = null;
+		Integer flush = null;
+		try {
+			m = Deflater.class.getMethod("deflate", byte[].class, int.class, int.class, int.class);
+			flush = Integer.valueOf(Deflater.class.getField("SYNC_FLUSH").getInt(null));
+		} catch (Exception e) {
+			m = null;
+		}
+		DEFLATE_FLUSH = m;
+		SYNC_FLUSH = flush;
+	}
+
+	private static int blockSize = DEFAULT_BLOCK_SIZE;
+
+	private static boolean presetDictionary = true;
+
+	private static Executor executor;
+
+	/**
+	 * 当前运行环境是否支持并行压缩(需要SYNC_FLUSH)
+	 */
+	public static boolean isAvailable() {
+		return DEFLATE_FLUSH != null;
+	}
+
+	/**
+	 * 设置块大小, 不小于32K
+	 * @param size
+	 */
+	public static void setBlockSize(int size) {
+		blockSize = Math.max(size, DICT_SIZE);
+	}
+
+	public static int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * 是否以前一块末尾32K作为下一块的预设字典. 使用字典时压缩率与单线程基本相同, 不使用时各块完全独立
+	 * @param use
+	 */
+	public static void setPresetDictionary(boolean use) {
+		presetDictionary = use;
+	}
+
+	public static boolean isPresetDictionary() {
+		return presetDictionary;
+	}
+
+	/**
+	 * 设置执行压缩任务的线程池, null时使用内部的守护线程池.
+	 * 调用线程会帮助执行尚未开始的块, 所以即使与PDFWriter的压缩线程池相同也不会死锁
+	 * @param e
+	 */
+	public static synchronized void setExecutor(Executor e) {
+		executor = e;
+	}
+
+	/**
+	 *
+	 * @Title: compress
+	 * @Description: 把b[off, off+len)压缩为zlib格式写到out, 与DeflaterOutputStream的结果可以用同一个Inflater解压
+	 *
+	 * @param b
+	 * @param off
+	 * @param len
+	 * @param level 压缩级别, 同Deflater
+	 * @param out
+	 * @throws IOException
+	 */
+	public static void compress(final byte b[], final int off, final int len, final int level, OutputStream out) throws IOException {
+		int size = blockSize;
+		if (!isAvailable() || len <= size) {
+			Deflater deflater = ZipPool.getDeflater(level);
+			try {
+				DeflaterOutputStream zip = new DeflaterOutputStream(out, deflater);
+				zip.write(b, off, len);
+				zip.finish();
+			} finally {
+				ZipPool.release(deflater);
+			}
+			return;
+		}
+		final boolean dict = presetDictionary;
+		List<FutureTask<byte[]>> tasks = new ArrayList<FutureTask<byte[]>>(len / size + 1);
+		Executor pool = getExecutor();
+		for (int start = off; start < off + len; start += size) {
+			final int s = start;
+			final int n = Math.min(size, off + len - start);
+			final boolean last = (start + n == off + len);
+			final int dictLen = dict ? Math.min(DICT_SIZE, start - off) : 0;
+			FutureTask<byte[]> task = new FutureTask<byte[]>(new Callable<byte[]>() {
+				public byte[] call() throws Exception {
+					return compressBlock(b, s, n, dictLen, last, level);
+				}
+			});
+			tasks.add(task);
+			pool.execute(task);
+		}
+
+		// 压缩进行的同时计算整段的Adler-32
+		Adler32 adler = new Adler32();
+		adler.update(b, off, len);
+
+		out.write(0x78);
+		out.write(headerFlags(level));
+		try {
+			for (int i = 0; i < tasks.size(); ++i) {
+				FutureTask<byte[]> task = tasks.get(i);
+				// 尚未开始的块由调用线程执行
+				task.run();
+				out.write(task.get());
+			}
+		} catch (InterruptedException e) {
+			cancel(tasks);
+			Thread.currentThread().interrupt();
+			throw new IOException("parallel deflate interrupted");
+		} catch (ExecutionException e) {
+			cancel(tasks);
+			throw new IOException("parallel deflate failed: " + e.getCause());
+		} catch (IOException e) {
+			cancel(tasks);
+			throw e;
+		}
+		long v = adler.getValue();
+		out.write((int) (v >>> 24) & 0xff);
+		out.write((int) (v >>> 16) & 0xff);
+		out.write((int) (v >>> 8) & 0xff);
+		out.write((int) v & 0xff);
+	}
+
+	/**
+	 * 压缩一块, 结果为raw deflate数据. 非最后一块以SYNC_FLUSH结束, 最后一块带结束标记
+	 */
+	private static byte[] compressBlock(byte b[], int off, int len, int dictLen, boolean last, int level) throws Exception {
+		Deflater deflater = ZipPool.getDeflater(level, true);
+		try {
+			if (dictLen > 0) {
+				deflater.setDictionary(b, off - dictLen, dictLen);
+			}
+			deflater.setInput(b, off, len);
+			ByteArrayOutputStream out = new ByteArrayOutputStream(len / 2 + 64);
+			byte buf[] = new byte[Math.min(len + 64, 64 * 1024)];
+			if (last) {
+				deflater.finish();
+				while (!deflater.finished()) {
+					int n = deflater.deflate(buf);
+					out.write(buf, 0, n);
+				}
+			} else {
+				// 输出缓冲区被写满时需要再次调用
+				int n;
+				do {
+					n = ((Integer) DEFLATE_FLUSH.invoke(deflater, buf, Integer.valueOf(0), Integer.valueOf(buf.length), SYNC_FLUSH)).intValue();
+					out.write(buf, 0, n);
+				} while (n == buf.length);
+			}
+			return out.toByteArray();
+		} finally {
+			ZipPool.release(deflater);
+		}
+	}
+
+	/**
+	 * zlib头的第二个字节: FLEVEL和FCHECK, (CMF * 256 + FLG)须为31的倍数
+	 */
+	private static int headerFlags(int level) {
+		int flevel;
+		if (level == Deflater.DEFAULT_COMPRESSION || level == 6) {
+			flevel = 2;
+		} else if (level < 2) {
+			flevel = 0;
+		} else if (level < 6) {
+			flevel = 1;
+		} else {
+			flevel = 3;
+		}
+		int flg = flevel << 6;
+		return flg + 31 - ((0x78 << 8) + flg) % 31;
+	}
+
+	private static void cancel(List<FutureTask<byte[]>> tasks) {
+		for (FutureTask<byte[]> task : tasks) {
+			task.cancel(false);
+		}
+	}
+
+	private static synchronized Executor getExecutor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "parallel-deflater-" + count.incrementAndGet());
+					// 不阻止JVM退出
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return executor;
+	}
+
+}
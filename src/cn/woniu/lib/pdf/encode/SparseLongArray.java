@@ -0,0 +1,143 @@
+/** 
+ * Copyright (c) 2018, Woniu1983 All Rights Reserved. 
+ * 
+ */ 
+package cn.woniu.lib.pdf.encode;
+
+/** 
+ * @ClassName: SparseLongArray <br/> 
+ * @Description: 以int为下标的long数组, 按页(PAGE_SIZE个元素)分配, 只分配写入过的页.  <br/>
+ * 值0表示没有元素. 下标连续时与long[]一样紧凑, 下标分散(如增量更新中修改的少量对象)时也只占用很少的内存,
+ * 且可以按下标从小到大遍历, 不需要排序. 用于对象号->xref条目这类映射.
+ *
+ * @author woniu1983 
+ * @date: 2026年10月18日 上午1:36:20 <br/>
+ * @version  
+ * @since JDK 1.6 
+ */
+public class SparseLongArray {
+
+	private static final int PAGE_BITS = 8;
+
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+	private long pages[][] = new long[16][];
+
+	/** 值不为0的元素个数 */
+	private int count;
+
+	/** 值不为0的最大下标 */
+	private int last = -1;
+
+	/**
+	 * @param index 不小于0
+	 * @return 下标对应的值, 没有时为0
+	 */
+	public long get(final int index) {
+		int p = index >>> PAGE_BITS;
+		if (p >= pages.length || pages[p] == null) {
+			return 0;
+		}
+		return pages[p][index & PAGE_MASK];
+	}
+
+	/**
+	 * 
+	 * @Title: set  
+	 * @Description: 设置下标对应的值, 0表示删除  
+	 *
+	 * @param index 不小于0
+	 * @param value
+	 */
+	public void set(final int index, final long value) {
+		if (index < 0) {
+			throw new IndexOutOfBoundsException("index: " + index);
+		}
+		int p = index >>> PAGE_BITS;
+		if (p >= pages.length) {
+			if (value == 0) {
+				return;
+			}
+			long grown[][] = new long[Math.max(pages.length * 2, p + 1)][];
+			System.arraycopy(pages, 0, grown, 0, pages.length);
+			pages = grown;
+		}
+		long page[] = pages[p];
+		if (page == null) {
+			if (value == 0) {
+				return;
+			}
+			page = pages[p] = new long[PAGE_SIZE];
+		}
+		int i = index & PAGE_MASK;
+		long old = page[i];
+		page[i] = value;
+		if (old == 0 && value != 0) {
+			++count;
+			if (index > last) {
+				last = index;
+			}
+		} else if (old != 0 && value == 0) {
+			--count;
+			if (index == last) {
+				last = previousIndex(index - 1);
+			}
+		}
+	}
+
+	/**
+	 * 值不为0的元素个数
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * 值不为0的最大下标, 没有元素时为-1
+	 */
+	public int lastIndex() {
+		return last;
+	}
+
+	/**
+	 * 
+	 * @Title: nextIndex  
+	 * @Description: 从from开始(包括from)第一个值不为0的下标, 用于按顺序遍历  
+	 *
+	 * @param from
+	 * @return 下标, 没有时为-1
+	 */
+	public int nextIndex(final int from) {
+		int index = Math.max(from, 0);
+		while (index <= last) {
+			long page[] = pages[index >>> PAGE_BITS];
+			if (page == null) {
+				// 跳过未分配的页
+				index = (index | PAGE_MASK) + 1;
+				continue;
+			}
+			if (page[index & PAGE_MASK] != 0) {
+				return index;
+			}
+			++index;
+		}
+		return -1;
+	}
+
+	private int previousIndex(final int from) {
+		for (int index = from; index >= 0; --index) {
+			long page[] = pages[index >>> PAGE_BITS];
+			if (page == null) {
+				index &= ~PAGE_MASK;
+				continue;
+			}
+			if (page[index & PAGE_MASK] != 0) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+}
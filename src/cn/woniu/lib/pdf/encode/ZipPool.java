@@ -0,0 +1,234 @@
+/** 
+ * Copyright (c) 2018, Woniu1983 All Rights Reserved. 
+ * 
+ */ 
+package cn.woniu.lib.pdf.encode;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * @ClassName: ZipPool <br/> 
+ * @Description: Deflater/Inflater对象池, 避免每个流都分配和释放zlib的native内存(Deflater约256K).  <br/>
+ * Deflater按(压缩级别, nowrap)分别缓存, Inflater按nowrap缓存, 每种最多缓存maxPooled个.
+ * 取出的对象用完后必须调用release(), 不能再调用end().
+ *
+ * @author woniu1983 
+ * @date: 2026年10月17日 下午11:58:37 <br/>
+ * @version  
+ * @since JDK 1.6 
+ */
+public class ZipPool {
+
+	/** 压缩级别-1~9, 各有wrap/nowrap两种 */
+	private static final int LEVELS = 11;
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static final ArrayList<Deflater> deflaters[] = new ArrayList[LEVELS * 2];
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static final ArrayList<Inflater> inflaters[] = new ArrayList[2];
+
+	private static int maxPooled = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+	private static final AtomicLong deflaterHits = new AtomicLong();
+	private static final AtomicLong deflaterMisses = new AtomicLong();
+	private static final AtomicLong inflaterHits = new AtomicLong();
+	private static final AtomicLong inflaterMisses = new AtomicLong();
+
+	static {
+		for (int i = 0; i < deflaters.length; ++i) {
+			deflaters[i] = new ArrayList<Deflater>();
+		}
+		for (int i = 0; i < inflaters.length; ++i) {
+			inflaters[i] = new ArrayList<Inflater>();
+		}
+	}
+
+	/**
+	 * 池中的Deflater, 记录创建时的参数, release时据此放回
+	 */
+	private static class PooledDeflater extends Deflater {
+		final int key;
+
+		PooledDeflater(int level, boolean nowrap, int key) {
+			super(level, nowrap);
+			this.key = key;
+		}
+	}
+
+	private static class PooledInflater extends Inflater {
+		final int key;
+
+		PooledInflater(boolean nowrap, int key) {
+			super(nowrap);
+			this.key = key;
+		}
+	}
+
+	/**
+	 * 设置每种对象最多缓存的个数, 0表示不缓存
+	 * @param max
+	 */
+	public static void setMaxPooled(int max) {
+		maxPooled = Math.max(0, max);
+	}
+
+	public static int getMaxPooled() {
+		return maxPooled;
+	}
+
+	/**
+	 * 取得zlib格式的Deflater
+	 * @param level 压缩级别, -1~9
+	 */
+	public static Deflater getDeflater(int level) {
+		return getDeflater(level, false);
+	}
+
+	/**
+	 *
+	 * @Title: getDeflater
+	 * @Description: 从池中取得Deflater, 池中没有时新建
+	 *
+	 * @param level 压缩级别, -1~9
+	 * @param nowrap true时为raw deflate, 不带zlib头和校验
+	 * @return
+	 */
+	public static Deflater getDeflater(int level, boolean nowrap) {
+		if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+			throw new IllegalArgumentException("invalid compression level: " + level);
+		}
+		int key = (level + 1) * 2 + (nowrap ? 1 : 0);
+		ArrayList<Deflater> pool = deflaters[key];
+		synchronized (pool) {
+			int size = pool.size();
+			if (size > 0) {
+				deflaterHits.incrementAndGet();
+				return pool.remove(size - 1);
+			}
+		}
+		deflaterMisses.incrementAndGet();
+		return new PooledDeflater(level, nowrap, key);
+	}
+
+	/**
+	 * 归还Deflater, 池已满或不是本池创建的对象时直接end()
+	 * @param deflater
+	 */
+	public static void release(Deflater deflater) {
+		if (deflater == null) {
+			return;
+		}
+		if (deflater instanceof PooledDeflater) {
+			ArrayList<Deflater> pool = deflaters[((PooledDeflater) deflater).key];
+			deflater.reset();
+			synchronized (pool) {
+				if (pool.size() < maxPooled) {
+					pool.add(deflater);
+					return;
+				}
+			}
+		}
+		deflater.end();
+	}
+
+	/**
+	 * 取得zlib格式的Inflater
+	 */
+	public static Inflater getInflater() {
+		return getInflater(false);
+	}
+
+	/**
+	 * 从池中取得Inflater, 池中没有时新建
+	 * @param nowrap true时为raw deflate数据
+	 * @return
+	 */
+	public static Inflater getInflater(boolean nowrap) {
+		int key = nowrap ? 1 : 0;
+		ArrayList<Inflater> pool = inflaters[key];
+		synchronized (pool) {
+			int size = pool.size();
+			if (size > 0) {
+				inflaterHits.incrementAndGet();
+				return pool.remove(size - 1);
+			}
+		}
+		inflaterMisses.incrementAndGet();
+		return new PooledInflater(nowrap, key);
+	}
+
+	/**
+	 * 归还Inflater, 池已满或不是本池创建的对象时直接end()
+	 * @param inflater
+	 */
+	public static void release(Inflater inflater) {
+		if (inflater == null) {
+			return;
+		}
+		if (inflater instanceof PooledInflater) {
+			ArrayList<Inflater> pool = inflaters[((PooledInflater) inflater).key];
+			inflater.reset();
+			synchronized (pool) {
+				if (pool.size() < maxPooled) {
+					pool.add(inflater);
+					return;
+				}
+			}
+		}
+		inflater.end();
+	}
+
+	/**
+	 * 释放池中缓存的全部对象
+	 */
+	public static void clear() {
+		for (int i = 0; i < deflaters.length; ++i) {
+			synchronized (deflaters[i]) {
+				for (Deflater d : deflaters[i]) {
+					d.end();
+				}
+				deflaters[i].clear();
+			}
+		}
+		for (int i = 0; i < inflaters.length; ++i) {
+			synchronized (inflaters[i]) {
+				for (Inflater inf : inflaters[i]) {
+					inf.end();
+				}
+				inflaters[i].clear();
+			}
+		}
+	}
+
+	/** 从池中取到Deflater的次数 */
+	public static long getDeflaterHits() {
+		return deflaterHits.get();
+	}
+
+	/** 池中没有, 新建Deflater的次数 */
+	public static long getDeflaterMisses() {
+		return deflaterMisses.get();
+	}
+
+	/** 从池中取到Inflater的次数 */
+	public static long getInflaterHits() {
+		return inflaterHits.get();
+	}
+
+	/** 池中没有, 新建Inflater的次数 */
+	public static long getInflaterMisses() {
+		return inflaterMisses.get();
+	}
+
+	public static void resetStatistics() {
+		deflaterHits.set(0);
+		deflaterMisses.set(0);
+		inflaterHits.set(0);
+		inflaterMisses.set(0);
+	}
+
+}
@@ -5,8 +5,12 @@
 package cn.woniu.lib.pdf.image;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
 
+import cn.woniu.lib.pdf.model.StreamProducer;
+
 
 /** 
  * @ClassName: ImageData <br/> 
@@ -52,4 +56,41 @@ public class ImageData extends PDFImage {
 		this.plainWidth = getWidth();
 		this.plainHeight = getHeight();
 	}
+
+	/**
+	 * 数据在写入PDF时才由producer分块提供, 直接压缩写到输出, 不在内存中保存
+	 *
+	 * @param width the exact width of the image
+	 * @param height the exact height of the image
+	 * @param components 1=GrayScale, 3=RGB ,  4=CMYK
+	 * @param bpc bits per component. Must be 1,2,4 or 8
+	 * @param producer 提供width * height个像素的数据, 每行按字节对齐
+	 * @throws IOException
+	 */
+	public ImageData(int width, int height, int components, int bpc, StreamProducer producer) throws IOException {
+		this(width, height, components, bpc, (byte[]) null);
+		this.rawDataProducer = producer;
+	}
+
+	/**
+	 * 数据在写入PDF时才从in读取, 只能写入一次. in不会被关闭
+	 *
+	 * @param width the exact width of the image
+	 * @param height the exact height of the image
+	 * @param components 1=GrayScale, 3=RGB ,  4=CMYK
+	 * @param bpc bits per component. Must be 1,2,4 or 8
+	 * @param in 图像数据
+	 * @throws IOException
+	 */
+	public ImageData(int width, int height, int components, int bpc, final InputStream in) throws IOException {
+		this(width, height, components, bpc, new StreamProducer() {
+			public void writeTo(OutputStream out) throws IOException {
+				byte buf[] = new byte[8192];
+				int n;
+				while ((n = in.read(buf)) > 0) {
+					out.write(buf, 0, n);
+				}
+			}
+		});
+	}
 }
@@ -10,6 +10,7 @@ import java.net.URL;
 import cn.woniu.lib.pdf.model.PDFDictionary;
 import cn.woniu.lib.pdf.model.PDFIndirectReference;
 import cn.woniu.lib.pdf.model.PDFStream;
+import cn.woniu.lib.pdf.model.StreamProducer;
 
 /** 
  * @ClassName: PDFImage <br/> 
@@ -33,6 +34,9 @@ public class PDFImage extends Rectangle {
 	/** The raw data of the image. */
 	protected byte rawData[];
 
+	/** 分块提供的raw数据, rawData为null时使用, 写入时才读取 */
+	protected StreamProducer rawDataProducer;
+
 	/** The bits per component of the raw image(1, 2, 4, 8). It also flags a CCITT image. */
 	protected int bpc = 1;
 
@@ -320,6 +324,10 @@ public class PDFImage extends Rectangle {
 		return this.rawData;
 	}
 
+	public StreamProducer getRawDataProducer() {
+		return this.rawDataProducer;
+	}
+
 	public int getColorspace() {
 		return this.colorspace;
 	}
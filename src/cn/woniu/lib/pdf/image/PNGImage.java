@@ -13,6 +13,7 @@ import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
 import cn.woniu.lib.pdf.encode.ByteBuffer;
+import cn.woniu.lib.pdf.encode.ZipPool;
 import cn.woniu.lib.pdf.model.PDFArray;
 import cn.woniu.lib.pdf.model.PDFDictionary;
 import cn.woniu.lib.pdf.model.PDFName;
@@ -498,27 +499,33 @@ public class PNGImage {
         else if (genBWMask)
             smask = new byte[(width + 7) / 8 * height];
         ByteArrayInputStream bai = new ByteArrayInputStream(idat.getBuf(), 0, idat.size());
-        InputStream infStream = new InflaterInputStream(bai, new Inflater());
-        this.dataStream = new DataInputStream(infStream);
-        
-        if (interlaceMethod != 1) {
-            decodePass(0, 0, 1, 1, width, height);
-        }
-        else {
-            decodePass(0, 0, 8, 8, (width + 7)/8, (height + 7)/8);
-            decodePass(4, 0, 8, 8, (width + 3)/8, (height + 7)/8);
-            decodePass(0, 4, 4, 8, (width + 3)/4, (height + 3)/8);
-            decodePass(2, 0, 4, 4, (width + 1)/4, (height + 3)/4);
-            decodePass(0, 2, 2, 4, (width + 1)/2, (height + 1)/4);
-            decodePass(1, 0, 2, 2, width/2, (height + 1)/2);
-            decodePass(0, 1, 1, 2, width, height/2);
-        }
-
+        Inflater inflater = ZipPool.getInflater();
         try {
-            this.dataStream.close();
-        } catch (IOException e) {
-        	Logger.Error("Datastream of PngImage#decodeIdat didn't close properly.");
-        	e.printStackTrace();
+            InputStream infStream = new InflaterInputStream(bai, inflater);
+            this.dataStream = new DataInputStream(infStream);
+            
+            if (interlaceMethod != 1) {
+                decodePass(0, 0, 1, 1, width, height);
+            }
+            else {
+                decodePass(0, 0, 8, 8, (width + 7)/8, (height + 7)/8);
+                decodePass(4, 0, 8, 8, (width + 3)/8, (height + 7)/8);
+                decodePass(0, 4, 4, 8, (width + 3)/4, (height + 3)/8);
+                decodePass(2, 0, 4, 4, (width + 1)/4, (height + 3)/4);
+                decodePass(0, 2, 2, 4, (width + 1)/2, (height + 1)/4);
+                decodePass(1, 0, 2, 2, width/2, (height + 1)/2);
+                decodePass(0, 1, 1, 2, width, height/2);
+            }
+            
+            try {
+                this.dataStream.close();
+            } catch (IOException e) {
+            	Logger.Error("Datastream of PngImage#decodeIdat didn't close properly.");
+            	e.printStackTrace();
+            }
+        } finally {
+            // decodePass出错时也要归还
+            ZipPool.release(inflater);
         }
     }
     
@@ -0,0 +1,66 @@
+/** 
+ * Copyright (c) 2018, Woniu1983 All Rights Reserved. 
+ * 
+ */ 
+package cn.woniu.lib.pdf.io;
+
+/** 
+ * @ClassName: ByteArraySource <br/> 
+ * @Description: 基于内存byte[]的数据源, 用于解析解压后的对象流(ObjStm)  <br/> 
+ * 
+ * @author woniu1983 
+ * @date: 2026年10月17日 下午9:55:03 <br/>
+ * @version  
+ * @since JDK 1.6 
+ */
+public class ByteArraySource implements RandomAccessSource {
+
+	private byte[] array;
+
+	private int pos = 0;
+
+	public ByteArraySource(byte[] array) {
+		if (array == null) {
+			throw new NullPointerException("array can't be null.");
+		}
+		this.array = array;
+	}
+
+	public int read() {
+		if (pos >= array.length) {
+			return -1;
+		}
+		return array[pos++] & 0xff;
+	}
+
+	public int read(byte[] b, int off, int len) {
+		if (pos >= array.length) {
+			return -1;
+		}
+		len = Math.min(len, array.length - pos);
+		System.arraycopy(array, pos, b, off, len);
+		pos += len;
+		return len;
+	}
+
+	public void seek(long pos) {
+		if (pos < 0) {
+			pos = 0;
+		}
+		this.pos = (int) Math.min(pos, array.length);
+	}
+
+	public long getFilePointer() {
+		return pos;
+	}
+
+	public long length() {
+		return array.length;
+	}
+
+	public void close() {
+		array = new byte[0];
+		pos = 0;
+	}
+
+}
@@ -4,14 +4,21 @@
  */ 
 package cn.woniu.lib.pdf.io;
 
-import java.io.FileDescriptor;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
 
 /** 
  * @ClassName: CounterOutputStream <br/> 
- * @Description: TODO  <br/> 
+ * @Description: 记录已写入字节数(即PDF中的偏移量)的输出流.  <br/> 
+ * 写入FileChannel(或包装成channel的OutputStream), 小的写入先进入可重用的direct ByteBuffer,
+ * 大块数据(图像, 压缩后的内容流)与缓冲区中的数据一起gathering write, 不再经过缓冲区拷贝.
  * 
  * @author woniu1983 
  * @date: 2018年5月14日 下午2:30:34 <br/>
@@ -20,51 +27,228 @@ import java.io.OutputStream;
  */
 public class CounterOutputStream extends OutputStream {
 
+	/** 缓冲区大小: 64K */
+	public static final int BUFFER_SIZE = 1 << 16;
+
+	/** 不小于此长度的写入不经过缓冲区, 直接gathering write */
+	static final int GATHER_THRESHOLD = 1 << 13;
 
 	protected OutputStream out;
-	
-	protected FileDescriptor fd;
 
+	protected WritableByteChannel channel;
+
+	/** 输出为文件时不为null, 用于sync() */
+	protected FileChannel fileChannel;
+
+	private final ByteBuffer buffer;
+
+	private final ByteBuffer gather[] = new ByteBuffer[2];
+
+	/** 已写入的字节数(包括还在缓冲区中的) */
 	protected long counter = 0L;
 
 	public CounterOutputStream(OutputStream out) throws IOException {
 		this.out = out;
 		if (out instanceof FileOutputStream) {
-			this.fd = ((FileOutputStream)out).getFD();
+			this.fileChannel = ((FileOutputStream)out).getChannel();
+			this.channel = this.fileChannel;
 		} else {
-			this.fd = null;
+			this.channel = Channels.newChannel(out);
+		}
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	}
+
+	public CounterOutputStream(WritableByteChannel channel) {
+		checkBlocking(channel);
+		this.out = null;
+		if (channel instanceof FileChannel) {
+			this.fileChannel = (FileChannel)channel;
+		}
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	}
+
+	/**
+	 * 只支持阻塞模式的channel: 非阻塞的channel(如非阻塞SocketChannel)缓冲区满时write返回0, 写入会空转
+	 * @param channel
+	 * @throws IllegalArgumentException channel为非阻塞模式的SelectableChannel时
+	 */
+	public static void checkBlocking(WritableByteChannel channel) {
+		if (channel instanceof SelectableChannel && !((SelectableChannel)channel).isBlocking()) {
+			throw new IllegalArgumentException("non-blocking channel is not supported");
+		}
+	}
+
+	/**
+	 * write返回0时检查channel是否在创建后被设为非阻塞, 避免空转
+	 */
+	private void checkProgress(long n) throws IOException {
+		if (n == 0 && channel instanceof SelectableChannel && !((SelectableChannel)channel).isBlocking()) {
+			throw new IOException("channel is in non-blocking mode");
 		}
 	}
 
 	@Override
 	public void write(byte[] bytes) throws IOException {
-        this.out.write(bytes);
-        this.counter += bytes.length;
+		write(bytes, 0, bytes.length);
 	}
-	
+
 	@Override
 	public void write(int b) throws IOException {
-        ++counter;
-        this.out.write(b);
-    }
-	
+		if (!buffer.hasRemaining()) {
+			drain();
+		}
+		buffer.put((byte)b);
+		++counter;
+	}
+
 	@Override
-    public void write(byte[] bytes, int off, int len) throws IOException {
+	public void write(byte[] bytes, int off, int len) throws IOException {
+		if (len >= GATHER_THRESHOLD) {
+			writeLarge(ByteBuffer.wrap(bytes, off, len));
+		} else {
+			if (len > buffer.remaining()) {
+				drain();
+			}
+			buffer.put(bytes, off, len);
+		}
 		this.counter += len;
-        this.out.write(bytes, off, len);
-    }
+	}
+
+	/**
+	 * 写入src的全部剩余内容
+	 * @param src
+	 * @throws IOException
+	 */
+	public void write(ByteBuffer src) throws IOException {
+		int len = src.remaining();
+		if (len >= GATHER_THRESHOLD) {
+			writeLarge(src);
+		} else {
+			if (len > buffer.remaining()) {
+				drain();
+			}
+			buffer.put(src);
+		}
+		this.counter += len;
+	}
+
+	/**
+	 * 
+	 * @Title: transferFrom  
+	 * @Description: 将src中[position, position + count)的内容写入输出, 数据由内核复制(FileChannel.transferTo), 不经过JVM堆  
+	 *
+	 * @param src
+	 * @param position src中的起始位置
+	 * @param count 字节数
+	 * @throws IOException
+	 */
+	public void transferFrom(FileChannel src, long position, long count) throws IOException {
+		drain();
+		long done = 0;
+		while (done < count) {
+			long n = src.transferTo(position + done, count - done, channel);
+			if (n <= 0) {
+				if (position + done >= src.size()) {
+					throw new IOException("unexpected end of file, " + (count - done) + " bytes missing");
+				}
+				// 目标暂时不能接收(transferTo不等待), 剩余部分经缓冲区复制
+				copy(src, position + done, count - done);
+				break;
+			}
+			done += n;
+		}
+		this.counter += count;
+	}
+
+	/**
+	 * 经缓冲区把src中[position, position + count)写入channel
+	 */
+	private void copy(FileChannel src, long position, long count) throws IOException {
+		long done = 0;
+		while (done < count) {
+			buffer.clear();
+			if (count - done < buffer.capacity()) {
+				buffer.limit((int)(count - done));
+			}
+			int n = src.read(buffer, position + done);
+			if (n < 0) {
+				buffer.clear();
+				throw new IOException("unexpected end of file, " + (count - done) + " bytes missing");
+			}
+			done += n;
+			drain();
+		}
+	}
+
+	/**
+	 * 缓冲区中的数据和src一起写出
+	 */
+	private void writeLarge(ByteBuffer src) throws IOException {
+		buffer.flip();
+		if (channel instanceof GatheringByteChannel) {
+			gather[0] = buffer;
+			gather[1] = src;
+			try {
+				while (src.hasRemaining()) {
+					checkProgress(((GatheringByteChannel)channel).write(gather));
+				}
+			} finally {
+				gather[1] = null;
+			}
+		} else {
+			while (buffer.hasRemaining()) {
+				checkProgress(channel.write(buffer));
+			}
+			while (src.hasRemaining()) {
+				checkProgress(channel.write(src));
+			}
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * 将缓冲区中的数据写入channel
+	 */
+	private void drain() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			checkProgress(channel.write(buffer));
+		}
+		buffer.clear();
+	}
 
 	@Override
 	public void close() throws IOException {
-		this.out.close();
+		if (!channel.isOpen()) {
+			return;
+		}
+		try {
+			drain();
+		} finally {
+			channel.close();
+			if (this.out != null) {
+				this.out.close();
+			}
+		}
 	}
 
 	@Override
 	public void flush() throws IOException {
-		this.out.flush();
-		if (this.fd != null) {
-//			System.out.println("-----------flush----fd.sync-----------");
-			this.fd.sync();
+		drain();
+		if (this.out != null && this.fileChannel == null) {
+			this.out.flush();
+		}
+	}
+
+	/**
+	 * flush并将文件内容同步到磁盘(fsync), 输出不是文件时只flush
+	 * @throws IOException
+	 */
+	public void sync() throws IOException {
+		flush();
+		if (this.fileChannel != null) {
+			this.fileChannel.force(true);
 		}
 	}
     
@@ -76,4 +260,12 @@ public class CounterOutputStream extends OutputStream {
     	this.counter = 0;
     }
 
+    /**
+     * 设置计数的起始值, 例如追加到已有文件时从原内容的长度开始计数
+     * @param counter
+     */
+    public void setCounter(long counter) {
+    	this.counter = counter;
+    }
+
 }
@@ -0,0 +1,141 @@
+/** 
+ * Copyright (c) 2018, Woniu1983 All Rights Reserved. 
+ * 
+ */ 
+package cn.woniu.lib.pdf.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** 
+ * @ClassName: FileChannelSource <br/> 
+ * @Description: 基于FileChannel定位读取(read(ByteBuffer, position))的数据源.  <br/> 
+ * 不依赖channel的当前位置, 内部缓冲一个窗口, 窗口内的seek不会重新读取文件.
+ * 
+ * @author woniu1983 
+ * @date: 2026年10月17日 下午10:20:18 <br/>
+ * @version  
+ * @since JDK 1.6 
+ */
+public class FileChannelSource implements RandomAccessSource {
+
+	/** 默认缓冲大小: 64K, 与BufferedRandomAccessFile相同 */
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final long length;
+
+	private final ByteBuffer buffer;
+	private final byte buff[];
+	/** 缓冲区中数据对应的文件位置 [bufStart, bufStart + bufLen) */
+	private long bufStart = 0;
+	private int bufLen = 0;
+
+	private long pos = 0;
+
+	public FileChannelSource(File file) throws IOException {
+		this(file, DEFAULT_BUFFER_SIZE);
+	}
+
+	public FileChannelSource(File file, int bufferSize) throws IOException {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("bufferSize must be > 0");
+		}
+		this.raf = new RandomAccessFile(file, "r");
+		this.channel = raf.getChannel();
+		this.length = channel.size();
+		this.buff = new byte[bufferSize];
+		this.buffer = ByteBuffer.wrap(buff);
+	}
+
+	/**
+	 * 从position开始填充缓冲区
+	 * @param position
+	 * @return 缓冲的字节数, 文件结束时返回0
+	 * @throws IOException
+	 */
+	private int fill(long position) throws IOException {
+		buffer.clear();
+		bufStart = position;
+		bufLen = 0;
+		while (buffer.hasRemaining()) {
+			int n = channel.read(buffer, position + bufLen);
+			if (n < 0) {
+				break;
+			}
+			bufLen += n;
+		}
+		return bufLen;
+	}
+
+	public int read() throws IOException {
+		if (pos >= length) {
+			return -1;
+		}
+		if (pos < bufStart || pos >= bufStart + bufLen) {
+			if (fill(pos) <= 0) {
+				return -1;
+			}
+		}
+		return buff[(int)(pos++ - bufStart)] & 0xff;
+	}
+
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (pos >= length) {
+			return -1;
+		}
+		len = (int)Math.min(len, length - pos);
+		int n = 0;
+		// 先取缓冲区中已有的部分
+		if (pos >= bufStart && pos < bufStart + bufLen) {
+			n = Math.min(len, (int)(bufStart + bufLen - pos));
+			System.arraycopy(buff, (int)(pos - bufStart), b, off, n);
+			pos += n;
+		}
+		if (n < len) {
+			if (len - n >= buff.length) {
+				// 大块读取直接读入目标数组, 不经过缓冲区
+				ByteBuffer dst = ByteBuffer.wrap(b, off + n, len - n);
+				while (dst.hasRemaining()) {
+					int count = channel.read(dst, pos);
+					if (count < 0) {
+						break;
+					}
+					pos += count;
+					n += count;
+				}
+			} else if (fill(pos) > 0) {
+				int count = Math.min(len - n, bufLen);
+				System.arraycopy(buff, 0, b, off + n, count);
+				pos += count;
+				n += count;
+			}
+		}
+		return n == 0 ? -1 : n;
+	}
+
+	public void seek(long pos) {
+		if (pos < 0) {
+			pos = 0;
+		}
+		this.pos = Math.min(pos, length);
+	}
+
+	public long getFilePointer() {
+		return pos;
+	}
+
+	public long length() {
+		return length;
+	}
+
+	public void close() throws IOException {
+		channel.close();
+		raf.close();
+	}
+
+}
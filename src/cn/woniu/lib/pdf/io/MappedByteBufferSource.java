@@ -0,0 +1,220 @@
+/** 
+ * Copyright (c) 2018, Woniu1983 All Rights Reserved. 
+ * 
+ */ 
+package cn.woniu.lib.pdf.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import cn.woniu.lib.pdf.util.Logger;
+
+/** 
+ * @ClassName: MappedByteBufferSource <br/> 
+ * @Description: 基于内存映射(MappedByteBuffer)的数据源, 由操作系统的页缓存提供数据, 无需拷贝.  <br/> 
+ * 单个MappedByteBuffer最多映射2G, 大文件按窗口(默认1G)分段映射, 段在第一次访问时才映射.
+ * 
+ * @author woniu1983 
+ * @date: 2026年10月17日 下午10:12:36 <br/>
+ * @version  
+ * @since JDK 1.6 
+ */
+public class MappedByteBufferSource implements RandomAccessSource {
+
+	/** 默认映射窗口大小: 1G */
+	public static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+	/** JDK9+: sun.misc.Unsafe.invokeCleaner(ByteBuffer) 及其实例 */
+	private static Method invokeCleaner;
+	private static Object unsafe;
+
+	/** JDK6~8: DirectByteBuffer.cleaner() */
+	private static Method getCleaner;
+
+	/** 是否已经提示过不能立即释放映射 */
+	private static volatile boolean cleanWarned = false;
+
+	static {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method m = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field f = unsafeClass.getDeclaredField("theUnsafe");
+			f.setAccessible(true);
+			unsafe = f.get(null);
+			invokeCleaner = m;
+		} catch (Throwable e) {
+			// JDK9之前没有invokeCleaner
+			invokeCleaner = null;
+			unsafe = null;
+		}
+		if (invokeCleaner == null) {
+			try {
+				Method m = Class.forName("java.nio.DirectByteBuffer").getMethod("cleaner");
+				m.setAccessible(true);
+				getCleaner = m;
+			} catch (Throwable e) {
+				getCleaner = null;
+			}
+		}
+	}
+
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final long length;
+	private final int windowSize;
+
+	/** 各窗口的映射, 未访问的为null */
+	private MappedByteBuffer windows[];
+
+	private long pos = 0;
+
+	/** 当前窗口, 连续读取时不必再查找窗口 */
+	private MappedByteBuffer current;
+	private long currentStart = 0;
+	private long currentEnd = 0;
+
+	public MappedByteBufferSource(File file) throws IOException {
+		this(file, DEFAULT_WINDOW_SIZE);
+	}
+
+	public MappedByteBufferSource(File file, int windowSize) throws IOException {
+		if (windowSize <= 0) {
+			throw new IllegalArgumentException("windowSize must be > 0");
+		}
+		this.raf = new RandomAccessFile(file, "r");
+		this.channel = raf.getChannel();
+		this.length = channel.size();
+		this.windowSize = windowSize;
+		int count = (int)((length + windowSize - 1) / windowSize);
+		this.windows = new MappedByteBuffer[count];
+		try {
+			if (count > 0) {
+				// 文件头和尾(startxref)总会被访问, 先映射第一个窗口以便尽早发现映射失败
+				window(0);
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	private MappedByteBuffer window(int index) throws IOException {
+		MappedByteBuffer buf = windows[index];
+		if (buf == null) {
+			long start = (long)index * windowSize;
+			long size = Math.min(windowSize, length - start);
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+			windows[index] = buf;
+		}
+		return buf;
+	}
+
+	public int read() throws IOException {
+		if (pos < currentStart || pos >= currentEnd) {
+			if (pos >= length) {
+				return -1;
+			}
+			int index = (int)(pos / windowSize);
+			current = window(index);
+			currentStart = (long)index * windowSize;
+			currentEnd = currentStart + current.capacity();
+		}
+		return current.get((int)(pos++ - currentStart)) & 0xff;
+	}
+
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (pos >= length) {
+			return -1;
+		}
+		len = (int)Math.min(len, length - pos);
+		int n = 0;
+		while (n < len) {
+			MappedByteBuffer buf = window((int)(pos / windowSize));
+			int offset = (int)(pos % windowSize);
+			int count = Math.min(len - n, buf.capacity() - offset);
+			// duplicate: 不修改共享缓冲区的position
+			ByteBuffer dup = buf.duplicate();
+			dup.position(offset);
+			dup.get(b, off + n, count);
+			n += count;
+			pos += count;
+		}
+		return n;
+	}
+
+	public void seek(long pos) {
+		if (pos < 0) {
+			pos = 0;
+		}
+		this.pos = Math.min(pos, length);
+	}
+
+	public long getFilePointer() {
+		return pos;
+	}
+
+	public long length() {
+		return length;
+	}
+
+	public void close() throws IOException {
+		if (windows != null) {
+			for (int i = 0; i < windows.length; ++i) {
+				if (windows[i] != null) {
+					clean(windows[i]);
+				}
+			}
+			windows = null;
+		}
+		current = null;
+		currentStart = currentEnd = 0;
+		channel.close();
+		raf.close();
+	}
+
+	/**
+	 * 尽量立即释放映射(否则要等到GC, Windows下映射期间文件不能被删除或截断).
+	 * JDK9+使用sun.misc.Unsafe.invokeCleaner, 之前的版本使用DirectByteBuffer.cleaner();
+	 * 都不可用时记录日志, 交给GC处理.
+	 * @param buffer
+	 */
+	private static void clean(final ByteBuffer buffer) {
+		if (buffer == null || !buffer.isDirect()) {
+			return;
+		}
+		try {
+			if (invokeCleaner != null) {
+				invokeCleaner.invoke(unsafe, buffer);
+				return;
+			}
+			if (getCleaner != null) {
+				Object cleaner = getCleaner.invoke(buffer);
+				if (cleaner != null) {
+					Method clean = cleaner.getClass().getMethod("clean");
+					clean.setAccessible(true);
+					clean.invoke(cleaner);
+				}
+				return;
+			}
+		} catch (Throwable e) {
+			warnClean(e.toString());
+			return;
+		}
+		warnClean("no cleaner available");
+	}
+
+	private static void warnClean(String reason) {
+		if (!cleanWarned) {
+			cleanWarned = true;
+			Logger.Error("can't unmap MappedByteBuffer (" + reason + "), the file stays mapped until GC; "
+					+ "use PDFReader.InputMode.CHANNEL if the file must be truncated or deleted while the JVM runs");
+		}
+	}
+
+}
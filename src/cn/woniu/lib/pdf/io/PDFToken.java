@@ -4,6 +4,7 @@
  */ 
 package cn.woniu.lib.pdf.io;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 
@@ -23,26 +24,61 @@ public class PDFToken {
 
 	//	private final PDFInputFile file;
 
-	private final RandomAccessFile file;
+	private final RandomAccessSource file;
 
 	/** PDF 头部起始位置 (%PDF- 的偏移量) */
 	private long headerOffset;
 	private String version;
 
 	protected TokenType type;
+	/** 由tokenBuf按需生成, 只有调用getStringValue()时才创建String */
 	protected String stringValue;
 	protected int reference;
 	protected int generation;
 	protected boolean hexString;
 
-    private final StringBuilder outBuf = new StringBuilder();
+	/** 当前token的字节(NAME为解码#xx之后的字节, 不含'/'), 有效长度tokenLen, 重复使用 */
+	private byte[] tokenBuf = new byte[256];
+	private int tokenLen;
+
+	/** NUMBER token的值, 在读取时直接从字节解析 */
+	private long longNum;
+	private double doubleNum;
+	private boolean realNum;
+
+	/** nextValidToken()回退到第一个数字时使用 */
+	private byte[] saveBuf = new byte[32];
+	private int saveLen;
+
+	/** 预先编码的关键字, 用于{@link #tokenEquals(byte[])} */
+	public static final byte[] KEYWORD_OBJ = getKeyword("obj");
+	public static final byte[] KEYWORD_ENDOBJ = getKeyword("endobj");
+	public static final byte[] KEYWORD_STREAM = getKeyword("stream");
+	public static final byte[] KEYWORD_XREF = getKeyword("xref");
+	public static final byte[] KEYWORD_STARTXREF = getKeyword("startxref");
+	public static final byte[] KEYWORD_TRAILER = getKeyword("trailer");
+	public static final byte[] KEYWORD_R = getKeyword("R");
+	public static final byte[] KEYWORD_N = getKeyword("n");
+	public static final byte[] KEYWORD_F = getKeyword("f");
+	public static final byte[] KEYWORD_TRUE = getKeyword("true");
+	public static final byte[] KEYWORD_FALSE = getKeyword("false");
+	public static final byte[] KEYWORD_NULL = getKeyword("null");
 
 	public PDFToken(RandomAccessFile file, long headerOffset) throws IOException {
 		if (file == null) {
 			throw new IOException("RandomAccessFile is null");
 		}
 		
-		this.file = file;
+		this.file = new RandomAccessFileSource(file);
+		this.headerOffset = headerOffset <= 0 ? 0 : headerOffset;
+	}
+
+	public PDFToken(RandomAccessSource source, long headerOffset) throws IOException {
+		if (source == null) {
+			throw new IOException("RandomAccessSource is null");
+		}
+		
+		this.file = source;
 		this.headerOffset = headerOffset <= 0 ? 0 : headerOffset;
 	}
 
@@ -54,7 +90,7 @@ public class PDFToken {
 		byte[] buff = new byte[arrLength];
 		while (pos > 0) {
 			file.seek(pos);
-			int len = this.file.read(buff);
+			int len = this.file.read(buff, 0, arrLength);
 			int index = StringUtils.search(buff, 0, len, PDFConstant.PDF_STARTXREF.getBytes());
 			if (index >= 0) {
 				return pos + index;
@@ -77,8 +113,8 @@ public class PDFToken {
         // Note:  We have to initialize stringValue here, after we've looked for the end of the stream,
         // to ensure that we don't lose the value of a token that might end exactly at the end
         // of the stream
-        outBuf.setLength(0);
-        stringValue = EMPTY;
+        tokenLen = 0;
+        stringValue = null;
 
         switch (ch) {
             case '[':
@@ -89,7 +125,6 @@ public class PDFToken {
                 break;
             case '/':
             {
-                outBuf.setLength(0);
                 type = TokenType.NAME;
                 while (true) {
                     ch = file.read();
@@ -98,7 +133,7 @@ public class PDFToken {
                     if (ch == '#') {
                         ch = (getHex(file.read()) << 4) + getHex(file.read());
                     }
-                    outBuf.append((char)ch);
+                    append(ch);
                 }
                 backOnePosition(ch);
                 break;
@@ -116,7 +151,6 @@ public class PDFToken {
                     type = TokenType.START_DIC;
                     break;
                 }
-                outBuf.setLength(0);
                 type = TokenType.STRING;
                 hexString = true;
                 int v2 = 0;
@@ -133,14 +167,14 @@ public class PDFToken {
                         v2 = file.read();
                     if (v2 == '>') {
                         ch = v1 << 4;
-                        outBuf.append((char)ch);
+                        append(ch);
                         break;
                     }
                     v2 = getHex(v2);
                     if (v2 < 0)
                         break;
                     ch = (v1 << 4) + v2;
-                    outBuf.append((char)ch);
+                    append(ch);
                     v1 = file.read();
                 }
                 if (v1 < 0 || v2 < 0)
@@ -155,7 +189,6 @@ public class PDFToken {
                 break;
             case '(':
             {
-                outBuf.setLength(0);
                 type = TokenType.STRING;
                 hexString = false;
                 int nesting = 0;
@@ -241,7 +274,7 @@ public class PDFToken {
                     }
                     if (nesting == -1)
                         break;
-                    outBuf.append((char)ch);
+                    append(ch);
                 }
                 if (ch == -1)
                     throw new IOException("error.reading.string");
@@ -249,7 +282,6 @@ public class PDFToken {
             }
             default:
             {
-                outBuf.setLength(0);
                 if (ch == '-' || ch == '+' || ch == '.' || (ch >= '0' && ch <= '9')) {
                     type = TokenType.NUMBER;
                     boolean isReal = false;
@@ -260,10 +292,10 @@ public class PDFToken {
                             ++numberOfMinuses;
                             ch = file.read();
                         } while (ch == '-');
-                        outBuf.append('-');
+                        append('-');
                     }
                     else {
-                        outBuf.append((char)ch);
+                        append(ch);
                         // We don't need to check if the number is real over here
                         // as we need to know that fact only in case if there are any minuses.
                         ch = file.read();
@@ -271,20 +303,21 @@ public class PDFToken {
                     while (ch != -1 && ((ch >= '0' && ch <= '9') || ch == '.')) {
                         if (ch == '.')
                             isReal = true;
-                        outBuf.append((char)ch);
+                        append(ch);
                         ch = file.read();
                     }
                     if (numberOfMinuses > 1 && !isReal) {
                         // Numbers of integer type and with more than one minus before them
                         // are interpreted by Acrobat as zero.
-                        outBuf.setLength(0);
-                        outBuf.append('0');
+                        tokenLen = 0;
+                        append('0');
                     }
+                    parseNumber();
                 }
                 else {
                     type = TokenType.OTHER;
                     do {
-                        outBuf.append((char)ch);
+                        append(ch);
                         ch = file.read();
                     } while (!delims[ch + 1]);
                 }
@@ -293,15 +326,76 @@ public class PDFToken {
                 break;
             }
         }
-        if (outBuf != null)
-            stringValue = outBuf.toString();
         return true;
     }
+
+    private void append(int ch) {
+        if (tokenLen == tokenBuf.length) {
+            byte[] b = new byte[tokenBuf.length << 1];
+            System.arraycopy(tokenBuf, 0, b, 0, tokenLen);
+            tokenBuf = b;
+        }
+        tokenBuf[tokenLen++] = (byte)ch;
+    }
+
+    /** 10^0 ~ 10^22, 都可以用double精确表示 */
+    private static final double POW10[] = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /**
+     * 直接从tokenBuf解析数字, 不创建String.
+     * 有效数字不超过15位(小于2^53)且小数位数不超过22位时, mantissa / 10^scale 与Double.parseDouble结果相同(都是正确舍入)
+     */
+    private void parseNumber() {
+        int p = 0;
+        boolean neg = false;
+        if (tokenBuf[0] == '-' || tokenBuf[0] == '+') {
+            neg = tokenBuf[0] == '-';
+            p++;
+        }
+        long mantissa = 0;
+        // 有效数字位数(不含前导0)
+        int digits = 0;
+        int scale = 0;
+        boolean dot = false;
+        for (; p < tokenLen; p++) {
+            int c = tokenBuf[p];
+            if (c == '.') {
+                if (dot)
+                    break;
+                dot = true;
+                continue;
+            }
+            if (mantissa != 0 || c != '0')
+                digits++;
+            if (digits <= 18)
+                mantissa = mantissa * 10 + (c - '0');
+            if (dot)
+                scale++;
+        }
+        realNum = dot;
+        if (!dot && digits <= 18) {
+            longNum = neg ? -mantissa : mantissa;
+            doubleNum = longNum;
+        } else if (digits <= 15 && scale < POW10.length) {
+            doubleNum = mantissa / POW10[scale];
+            if (neg)
+                doubleNum = -doubleNum;
+            longNum = (long)doubleNum;
+        } else {
+            try {
+                doubleNum = Double.parseDouble(getStringValue());
+            } catch (NumberFormatException e) {
+                doubleNum = 0;
+            }
+            longNum = (long)doubleNum;
+        }
+    }
 	
 	public void nextValidToken() throws IOException {
         int level = 0;
-        String n1 = null;
-        String n2 = null;
+        long n2 = 0;
         long ptr = 0;
         while (nextToken()) {
             if (type == TokenType.COMMENT)
@@ -312,7 +406,7 @@ public class PDFToken {
                     if (type != TokenType.NUMBER)
                         return;
                     ptr = file.getFilePointer();
-                    n1 = stringValue;
+                    saveNumber();
                     ++level;
                     break;
                 }
@@ -320,38 +414,53 @@ public class PDFToken {
                 {
                     if (type != TokenType.NUMBER) {
                         file.seek(ptr);
-                        type = TokenType.NUMBER;
-                        stringValue = n1;
+                        restoreNumber();
                         return;
                     }
-                    n2 = stringValue;
+                    n2 = longNum;
                     ++level;
                     break;
                 }
                 default:
                 {
-                    if (type != TokenType.OTHER || !stringValue.equals("R")) {
+                    if (type != TokenType.OTHER || !tokenEquals(KEYWORD_R)) {
                         file.seek(ptr);
-                        type = TokenType.NUMBER;
-                        stringValue = n1;
+                        restoreNumber();
                         return;
                     }
+                    restoreNumber();
                     type = TokenType.REF;
-                    reference = Integer.parseInt(n1);
-                    generation = Integer.parseInt(n2);
+                    reference = (int)longNum;
+                    generation = (int)n2;
                     return;
                 }
             }
         }
         
         if (level == 1){ // if the level 1 check returns EOF, then we are still looking at a number - set the type back to NUMBER
-        	type = TokenType.NUMBER;
+        	restoreNumber();
         }
         // if we hit here, the file is either corrupt (stream ended unexpectedly),
         // or the last token ended exactly at the end of a stream.  This last
         // case can occur inside an Object Stream.
     }
 	
+    private void saveNumber() {
+        if (saveBuf.length < tokenLen) {
+            saveBuf = new byte[tokenLen];
+        }
+        System.arraycopy(tokenBuf, 0, saveBuf, 0, tokenLen);
+        saveLen = tokenLen;
+    }
+
+    private void restoreNumber() {
+        System.arraycopy(saveBuf, 0, tokenBuf, 0, saveLen);
+        tokenLen = saveLen;
+        type = TokenType.NUMBER;
+        stringValue = null;
+        parseNumber();
+    }
+
 	public void backOnePosition(int ch) throws IOException {
         if (ch != -1) {
         	long currIndex = file.getFilePointer();
@@ -459,8 +568,65 @@ public class PDFToken {
     }
     
     public String getStringValue() {
+        if (this.stringValue == null) {
+            if (tokenLen == 0) {
+                this.stringValue = EMPTY;
+            } else {
+                char[] chars = new char[tokenLen];
+                for (int k = 0; k < tokenLen; ++k)
+                    chars[k] = (char)(tokenBuf[k] & 0xff);
+                this.stringValue = new String(chars);
+            }
+        }
         return this.stringValue;
     }
+
+    /**
+     * 当前token的字节, 有效部分为[0, getTokenLength()), 下一次nextToken()时会被覆盖
+     * @return
+     */
+    public byte[] getTokenBuffer() {
+        return this.tokenBuf;
+    }
+
+    public int getTokenLength() {
+        return this.tokenLen;
+    }
+
+    /**
+     * 复制当前token的字节
+     * @return
+     */
+    public byte[] getTokenBytes() {
+        byte[] b = new byte[tokenLen];
+        System.arraycopy(tokenBuf, 0, b, 0, tokenLen);
+        return b;
+    }
+
+    /**
+     * 当前token是否与预先编码的关键字相同, 不创建String
+     * @param keyword 例如{@link #KEYWORD_OBJ}
+     * @return
+     */
+    public boolean tokenEquals(byte[] keyword) {
+        return tokenEquals(keyword, keyword.length);
+    }
+
+    /**
+     * 当前token是否与b的前len个字节相同
+     * @param b
+     * @param len
+     * @return
+     */
+    public boolean tokenEquals(byte[] b, int len) {
+        if (len != tokenLen)
+            return false;
+        for (int k = 0; k < tokenLen; ++k) {
+            if (tokenBuf[k] != b[k])
+                return false;
+        }
+        return true;
+    }
     
     public int getReference() {
         return this.reference;
@@ -470,12 +636,28 @@ public class PDFToken {
         return this.generation;
     }
     
+    /**
+     * NUMBER token的值, 实数时取整数部分
+     * @return
+     */
     public long longValue() {
-        return Long.parseLong(this.stringValue);
+        return this.longNum;
     }
     
     public int intValue() {
-        return Integer.parseInt(this.stringValue);
+        return (int)this.longNum;
+    }
+
+    public double doubleValue() {
+        return this.doubleNum;
+    }
+
+    /**
+     * NUMBER token是否是实数(含小数点)
+     * @return
+     */
+    public boolean isReal() {
+        return this.realNum;
     }
     
     public boolean isHexString() {
@@ -514,6 +696,25 @@ public class PDFToken {
 		return file.read();
 	}
 
+	/**
+	 * 从当前位置读取b.length个字节, 不足时抛出EOFException
+	 * @param b
+	 * @throws IOException
+	 */
+	public void readFully(byte b[]) throws IOException {
+		int n = 0;
+		while (n < b.length) {
+			int count = file.read(b, n, b.length - n);
+			if (count < 0)
+				throw new EOFException("unexpected.end.of.file");
+			n += count;
+		}
+	}
+
+	public RandomAccessSource getSource() {
+		return this.file;
+	}
+
 	public void close() throws IOException {
 		file.close();
 	}
@@ -564,6 +765,13 @@ public class PDFToken {
 
 	static final String EMPTY = "";
 
+	private static byte[] getKeyword(String keyword) {
+		byte[] b = new byte[keyword.length()];
+		for (int k = 0; k < b.length; ++k)
+			b[k] = (byte)keyword.charAt(k);
+		return b;
+	}
+
 	/**
 	 * Is a certain character a whitespace? Currently checks on the following: '0', '9', '10', '12', '13', '32'.
 	 * <br />The same as calling {@link #isWhitespace(int, boolean) isWhiteSpace(ch, true)}.
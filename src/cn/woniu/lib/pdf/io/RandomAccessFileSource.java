@@ -0,0 +1,51 @@
+/** 
+ * Copyright (c) 2018, Woniu1983 All Rights Reserved. 
+ * 
+ */ 
+package cn.woniu.lib.pdf.io;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/** 
+ * @ClassName: RandomAccessFileSource <br/> 
+ * @Description: 基于RandomAccessFile(一般为BufferedRandomAccessFile)的数据源  <br/> 
+ * 
+ * @author woniu1983 
+ * @date: 2026年10月17日 下午9:52:40 <br/>
+ * @version  
+ * @since JDK 1.6 
+ */
+public class RandomAccessFileSource implements RandomAccessSource {
+
+	private final RandomAccessFile file;
+
+	public RandomAccessFileSource(RandomAccessFile file) {
+		this.file = file;
+	}
+
+	public int read() throws IOException {
+		return this.file.read();
+	}
+
+	public int read(byte[] b, int off, int len) throws IOException {
+		return this.file.read(b, off, len);
+	}
+
+	public void seek(long pos) throws IOException {
+		this.file.seek(pos);
+	}
+
+	public long getFilePointer() throws IOException {
+		return this.file.getFilePointer();
+	}
+
+	public long length() throws IOException {
+		return this.file.length();
+	}
+
+	public void close() throws IOException {
+		this.file.close();
+	}
+
+}
@@ -0,0 +1,41 @@
+/** 
+ * Copyright (c) 2018, Woniu1983 All Rights Reserved. 
+ * 
+ */ 
+package cn.woniu.lib.pdf.io;
+
+import java.io.IOException;
+
+/** 
+ * @ClassName: RandomAccessSource <br/> 
+ * @Description: PDFToken读取的数据源, 可以是文件, 也可以是内存中的字节(例如解压后的ObjStm)  <br/> 
+ * 
+ * @author woniu1983 
+ * @date: 2026年10月17日 下午9:50:12 <br/>
+ * @version  
+ * @since JDK 1.6 
+ */
+public interface RandomAccessSource {
+
+	/**
+	 * 读取一个字节
+	 * @return 0-255, 文件结束时返回-1
+	 * @throws IOException
+	 */
+	int read() throws IOException;
+
+	/**
+	 * 读取最多len个字节到b[off]开始的位置
+	 * @return 实际读取的字节数, 文件结束时返回-1
+	 * @throws IOException
+	 */
+	int read(byte[] b, int off, int len) throws IOException;
+
+	void seek(long pos) throws IOException;
+
+	long getFilePointer() throws IOException;
+
+	long length() throws IOException;
+
+	void close() throws IOException;
+}
@@ -0,0 +1,217 @@
+/** 
+ * Copyright (c) 2018, Woniu1983 All Rights Reserved. 
+ * 
+ */ 
+package cn.woniu.lib.pdf.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** 
+ * @ClassName: XrefEntryDecoder <br/> 
+ * @Description: 传统xref表的快速解码: 每条记录固定20字节 "nnnnnnnnnn ggggg n\r\n",  <br/> 
+ * 直接从字节块解码, 不经过PDFToken. 记录数较多时按块分给多个线程并行解码.
+ * 
+ * @author woniu1983 
+ * @date: 2026年10月17日 下午11:05:21 <br/>
+ * @version  
+ * @since JDK 1.6 
+ */
+public class XrefEntryDecoder {
+
+	/** 每条xref记录的字节数 */
+	public static final int RECORD_SIZE = 20;
+
+	/** 解码结果: free(f)记录 */
+	public static final long FREE = -1;
+
+	/** 解码结果: 格式不正确的记录 */
+	public static final long INVALID = Long.MIN_VALUE;
+
+	/** 每次从文件读取的记录数 */
+	private static final int BLOCK_RECORDS = 1 << 16;
+
+	/** 一次读取的记录数不少于此值时并行解码 */
+	private static int parallelThreshold = 1 << 15;
+
+	private static ExecutorService executor;
+
+	/**
+	 * 设置并行解码的最少记录数, <= 0 时不并行
+	 * @param threshold
+	 */
+	public static void setParallelThreshold(int threshold) {
+		parallelThreshold = threshold;
+	}
+
+	/**
+	 * 
+	 * @Title: decode  
+	 * @Description: 从position开始读取count条记录, 解码到out[0, count)  
+	 *
+	 * @param source
+	 * @param position 第一条记录的位置
+	 * @param count 记录数
+	 * @param out 'n'记录为偏移量, 'f'记录为{@link #FREE}
+	 * @return 开头连续有效的记录数, 小于count时out[返回值]之后的内容无意义
+	 * @throws IOException
+	 */
+	public static int decode(final RandomAccessSource source, final long position, final int count, final long out[]) throws IOException {
+		int blockRecords = Math.min(count, BLOCK_RECORDS);
+		byte block[] = new byte[blockRecords * RECORD_SIZE];
+		int done = 0;
+		source.seek(position);
+		while (done < count) {
+			int n = Math.min(blockRecords, count - done);
+			int len = readFully(source, block, n * RECORD_SIZE);
+			int records = len / RECORD_SIZE;
+			int valid = decodeBlock(block, records, out, done);
+			done += valid;
+			if (valid < n) {
+				break;
+			}
+		}
+		return done;
+	}
+
+	private static int readFully(final RandomAccessSource source, final byte b[], final int len) throws IOException {
+		int n = 0;
+		while (n < len) {
+			int count = source.read(b, n, len - n);
+			if (count < 0)
+				break;
+			n += count;
+		}
+		return n;
+	}
+
+	/**
+	 * 解码block中的records条记录到out[outOff...], 返回开头连续有效的记录数
+	 */
+	private static int decodeBlock(final byte block[], final int records, final long out[], final int outOff) throws IOException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		if (parallelThreshold <= 0 || records < parallelThreshold || threads < 2) {
+			return decodeRange(block, 0, records, out, outOff);
+		}
+		int chunk = (records + threads - 1) / threads;
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>(threads);
+		ExecutorService pool = getExecutor();
+		for (int from = 0; from < records; from += chunk) {
+			final int f = from;
+			final int to = Math.min(records, from + chunk);
+			futures.add(pool.submit(new Callable<Integer>() {
+				public Integer call() {
+					return Integer.valueOf(decodeRange(block, f, to, out, outOff));
+				}
+			}));
+		}
+		// 各段按顺序检查, 第一个不完整的段决定有效记录数
+		int valid = 0;
+		for (int i = 0; i < futures.size(); ++i) {
+			int from = i * chunk;
+			int to = Math.min(records, from + chunk);
+			int end;
+			try {
+				end = futures.get(i).get().intValue();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("xref decode interrupted");
+			} catch (ExecutionException e) {
+				throw new IOException("xref decode failed: " + e.getCause());
+			}
+			if (valid == from) {
+				valid = end;
+			}
+			if (end < to) {
+				// 等待其余任务结束后再返回, out不会在返回后被修改
+				for (int j = i + 1; j < futures.size(); ++j) {
+					try {
+						futures.get(j).get();
+					} catch (Exception ignore) {
+					}
+				}
+				break;
+			}
+		}
+		return valid;
+	}
+
+	/**
+	 * 解码block中[from, to)的记录, 返回第一条无效记录的序号(全部有效时为to)
+	 */
+	private static int decodeRange(final byte b[], final int from, final int to, final long out[], final int outOff) {
+		for (int r = from; r < to; ++r) {
+			long v = decodeRecord(b, r * RECORD_SIZE);
+			if (v == INVALID) {
+				return r;
+			}
+			out[outOff + r] = v;
+		}
+		return to;
+	}
+
+	/**
+	 * 
+	 * @Title: decodeRecord  
+	 * @Description: 解码一条20字节的记录 "nnnnnnnnnn ggggg n" + 2字节行尾(" \r", " \n" 或 "\r\n")  
+	 *
+	 * @param b
+	 * @param off
+	 * @return 'n'记录为偏移量, 'f'记录为{@link #FREE}, 格式不正确时为{@link #INVALID}
+	 */
+	public static long decodeRecord(final byte b[], final int off) {
+		long pos = 0;
+		for (int i = 0; i < 10; ++i) {
+			int c = b[off + i] - '0';
+			if (c < 0 || c > 9)
+				return INVALID;
+			pos = pos * 10 + c;
+		}
+		if (b[off + 10] != ' ' || b[off + 16] != ' ')
+			return INVALID;
+		for (int i = 11; i < 16; ++i) {
+			int c = b[off + i] - '0';
+			if (c < 0 || c > 9)
+				return INVALID;
+		}
+		if (!isEol(b[off + 18]) || !isEol(b[off + 19]))
+			return INVALID;
+		switch (b[off + 17]) {
+		case 'n':
+			return pos;
+		case 'f':
+			return FREE;
+		default:
+			return INVALID;
+		}
+	}
+
+	private static boolean isEol(byte c) {
+		return c == ' ' || c == '\r' || c == '\n';
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "xref-decoder-" + count.incrementAndGet());
+					// 不阻止JVM退出
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return executor;
+	}
+
+}
@@ -74,7 +74,15 @@ public class PDFArray extends PDFObj implements Iterable<PDFObj>  {
 
 	public PDFArray(final PDFArray array) {
 		super(ARRAY);
-		arrayList = new ArrayList<PDFObj>(array.arrayList);
+		if (array.arrayList != null) {
+			arrayList = new ArrayList<PDFObj>(array.arrayList);
+		} else {
+			// PDFNumericArray
+			int size = array.size();
+			arrayList = new ArrayList<PDFObj>(size);
+			for (int k = 0; k < size; ++k)
+				arrayList.add(array.getPDFObj(k));
+		}
 	}
 
 	@Override
@@ -455,20 +463,21 @@ public class PDFArray extends PDFObj implements Iterable<PDFObj>  {
 	public void write(final OutputStream os) throws IOException {
 		os.write('[');
 
-		Iterator<PDFObj> iter = arrayList.iterator();
+		// 按下标遍历, 不创建Iterator
 		PDFObj object;
 		int type = 0;
+		int size = arrayList.size();
 		
-		if (iter.hasNext()) {
-			object = iter.next();
+		if (size > 0) {
+			object = arrayList.get(0);
 			if (object == null) {
 				object = PDFNull.PDFNULL;
 			}
 			object.write(os);
 		}
 		
-		while (iter.hasNext()) {
-			object = iter.next();
+		for (int k = 1; k < size; ++k) {
+			object = arrayList.get(k);
 			if (object == null) {
 				object = PDFNull.PDFNULL;
 			}
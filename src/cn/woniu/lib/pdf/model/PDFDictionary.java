@@ -6,8 +6,12 @@ package cn.woniu.lib.pdf.model;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import cn.woniu.lib.pdf.PDFReader;
@@ -17,6 +21,9 @@ import cn.woniu.lib.pdf.PDFReader;
  * @ClassName: PDFDictionary <br/> 
  * @Description: TODO  <br/> 
  * 
+ * 条目不超过SMALL_SIZE个时按插入顺序存放在keys/values两个数组中, 线性查找;
+ * 超过后转为LinkedHashMap(hashMap), 小字典时hashMap为null.
+ * 
  * <CODE>PdfDictionary</CODE> is the Pdf dictionary object.
  * <P>
  * A dictionary is an associative table containing pairs of objects.
@@ -63,17 +70,39 @@ public class PDFDictionary extends PDFObj {
     /** This is the type of this dictionary */
     private PDFName dictionaryType = null;
 
-    /** This is the hashmap that contains all the values and keys of the dictionary */
+    /** 不超过此数目的条目存放在数组中 */
+    static final int SMALL_SIZE = 12;
+
+    /** 数组的初始长度 */
+    private static final int INITIAL_SIZE = 4;
+
+    /** This is the hashmap that contains all the values and keys of the dictionary, null while the dictionary is small */
     protected LinkedHashMap<PDFName, PDFObj> hashMap;
-    
+
+    /** 小字典的键, 按插入顺序 */
+    private PDFName keys[];
+
+    /** 小字典的值, 与keys对应 */
+    private PDFObj values[];
+
+    /** 小字典的条目数 */
+    private int count;
+
+    /** 结构修改的次数, 供getKeys()的迭代器检查 */
+    private transient int modCount;
+
     public PDFDictionary() {
         super(DICTIONARY);
-        hashMap = new LinkedHashMap<PDFName, PDFObj>();
     }
 
     public PDFDictionary(int capacity) {
         super(DICTIONARY);
-        hashMap = new LinkedHashMap<PDFName, PDFObj>(capacity);
+        if (capacity > SMALL_SIZE) {
+            hashMap = new LinkedHashMap<PDFName, PDFObj>(capacity);
+        } else if (capacity > 0) {
+            keys = new PDFName[capacity];
+            values = new PDFObj[capacity];
+        }
     }
 
     public PDFDictionary(final PDFName type) {
@@ -107,9 +136,99 @@ public class PDFDictionary extends PDFObj {
         if (key == null)
             throw new IllegalArgumentException("key is null");
         if (object == null || object.isNull())
-            hashMap.remove(key);
+            remove(key);
         else
-            hashMap.put(key, object);
+            set(key, object);
+    }
+
+    /**
+     * 小字典中键的位置, 不存在时为-1
+     */
+    private int indexOf(final Object key) {
+        if (!(key instanceof PDFName))
+            return -1;
+        int h = key.hashCode();
+        for (int i = 0; i < count; i++) {
+            PDFName k = keys[i];
+            if (k == key || (k.hashCode() == h && k.equals(key)))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 不检查null的put, 新键加在末尾, 已有的键保持原来的位置
+     */
+    private void set(final PDFName key, final PDFObj object) {
+        if (hashMap != null) {
+            if (hashMap.put(key, object) == null)
+                modCount++;
+            return;
+        }
+        int i = indexOf(key);
+        if (i >= 0) {
+            values[i] = object;
+            return;
+        }
+        modCount++;
+        if (keys == null) {
+            keys = new PDFName[INITIAL_SIZE];
+            values = new PDFObj[INITIAL_SIZE];
+        } else if (count == keys.length) {
+            if (count >= SMALL_SIZE) {
+                // 转为LinkedHashMap, 保持顺序
+                hashMap = new LinkedHashMap<PDFName, PDFObj>(count * 2);
+                for (i = 0; i < count; i++)
+                    hashMap.put(keys[i], values[i]);
+                hashMap.put(key, object);
+                keys = null;
+                values = null;
+                count = 0;
+                return;
+            }
+            int size = Math.min(count * 2, SMALL_SIZE);
+            PDFName k[] = new PDFName[size];
+            PDFObj v[] = new PDFObj[size];
+            System.arraycopy(keys, 0, k, 0, count);
+            System.arraycopy(values, 0, v, 0, count);
+            keys = k;
+            values = v;
+        }
+        keys[count] = key;
+        values[count] = object;
+        count++;
+    }
+
+    /**
+     * 删除小字典中位置i的条目, 后面的条目前移以保持顺序
+     */
+    private void removeAt(int i) {
+        modCount++;
+        int n = count - i - 1;
+        if (n > 0) {
+            System.arraycopy(keys, i + 1, keys, i, n);
+            System.arraycopy(values, i + 1, values, i, n);
+        }
+        count--;
+        keys[count] = null;
+        values[count] = null;
+    }
+
+    /**
+     * 按顺序把dic的所有条目放入此字典
+     */
+    private void setAll(final PDFDictionary dic) {
+        if (dic.hashMap != null) {
+            for (Entry<PDFName, PDFObj> e : dic.hashMap.entrySet())
+                set(e.getKey(), e.getValue());
+        } else {
+            // dic可能就是this
+            PDFName k[] = dic.keys;
+            PDFObj v[] = dic.values;
+            int n = dic.count;
+            for (int i = 0; i < n; i++)
+                set(k[i], v[i]);
+        }
     }
 
     /**
@@ -143,7 +262,7 @@ public class PDFDictionary extends PDFObj {
      *   copied over
      */
     public void putAll(final PDFDictionary dic) {
-        hashMap.putAll(dic.hashMap);
+        setAll(dic);
     }
 
     /**
@@ -153,7 +272,14 @@ public class PDFDictionary extends PDFObj {
      * @param key a <CODE>PDFName</CODE>
      */
     public void remove(final PDFName key) {
-        hashMap.remove(key);
+        if (hashMap != null) {
+            if (hashMap.remove(key) != null)
+                modCount++;
+            return;
+        }
+        int i = indexOf(key);
+        if (i >= 0)
+            removeAt(i);
     }
 
     /**
@@ -162,7 +288,11 @@ public class PDFDictionary extends PDFObj {
      * @since 5.0.2
      */
     public void clear() {
-        hashMap.clear();
+        modCount++;
+        hashMap = null;
+        keys = null;
+        values = null;
+        count = 0;
     }
 
     /**
@@ -174,7 +304,10 @@ public class PDFDictionary extends PDFObj {
      *   <VAR>key</VAR>
      */
     public PDFObj get(final PDFName key) {
-        return hashMap.get(key);
+        if (hashMap != null)
+            return hashMap.get(key);
+        int i = indexOf(key);
+        return i < 0 ? null : values[i];
     }
 
     public PDFObj getDirectObject(final PDFName key) {
@@ -183,10 +316,82 @@ public class PDFDictionary extends PDFObj {
 
     /**
      * Get all keys that are set.
+     * 返回的集合与字典关联, 可通过其迭代器删除键.
      *
      */
     public Set<PDFName> getKeys() {
-        return hashMap.keySet();
+        return new KeySet();
+    }
+
+    /**
+     * 字典的键的视图, 转为LinkedHashMap之后委托给hashMap.keySet()
+     */
+    private class KeySet extends AbstractSet<PDFName> {
+
+        @Override
+        public Iterator<PDFName> iterator() {
+            if (hashMap != null)
+                return hashMap.keySet().iterator();
+            return new KeyIterator();
+        }
+
+        @Override
+        public int size() {
+            return PDFDictionary.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (hashMap != null)
+                return hashMap.containsKey(o);
+            return indexOf(o) >= 0;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o))
+                return false;
+            PDFDictionary.this.remove((PDFName) o);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            PDFDictionary.this.clear();
+        }
+    }
+
+    private class KeyIterator implements Iterator<PDFName> {
+
+        private int next;
+
+        private int last = -1;
+
+        private int expectedModCount = modCount;
+
+        public boolean hasNext() {
+            return next < count;
+        }
+
+        public PDFName next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (next >= count)
+                throw new NoSuchElementException();
+            last = next++;
+            return keys[last];
+        }
+
+        public void remove() {
+            if (last < 0)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
     }
 
     /**
@@ -197,7 +402,7 @@ public class PDFDictionary extends PDFObj {
      *   <CODE>PDFDictionary</CODE>.
      */
     public int size() {
-        return hashMap.size();
+        return hashMap != null ? hashMap.size() : count;
     }
 
     /**
@@ -207,7 +412,9 @@ public class PDFDictionary extends PDFObj {
      * @return <CODE>true</CODE> if the key is set, otherwise <CODE>false</CODE>.
      */
     public boolean contains(final PDFName key) {
-        return hashMap.containsKey(key);
+        if (hashMap != null)
+            return hashMap.containsKey(key);
+        return indexOf(key) >= 0;
     }
 
     // DICTIONARY TYPE METHODS
@@ -273,13 +480,23 @@ public class PDFDictionary extends PDFObj {
     // OTHER METHODS
 
     public void merge(final PDFDictionary other) {
-        hashMap.putAll(other.hashMap);
+        setAll(other);
     }
 
     public void mergeDifferent(final PDFDictionary other) {
-        for (PDFName key : other.hashMap.keySet()) {
-            if (!hashMap.containsKey(key))
-                hashMap.put(key, other.hashMap.get(key));
+        if (other.hashMap != null) {
+            for (Entry<PDFName, PDFObj> e : other.hashMap.entrySet()) {
+                if (!contains(e.getKey()))
+                    set(e.getKey(), e.getValue());
+            }
+        } else {
+            PDFName k[] = other.keys;
+            PDFObj v[] = other.values;
+            int n = other.count;
+            for (int i = 0; i < n; i++) {
+                if (!contains(k[i]))
+                    set(k[i], v[i]);
+            }
         }
     }
 
@@ -457,21 +674,28 @@ public class PDFDictionary extends PDFObj {
         os.write('<');
         os.write('<');
         // loop over all the object-pairs in the HashMap
-        PDFObj value;
-        int type = 0;
-        for (Entry<PDFName, PDFObj> e : hashMap.entrySet()) {
-        	e.getKey().write(os);
-        	value = e.getValue();
-			type = value.type();
-        	if (type != PDFObj.ARRAY 
-        			&& type != PDFObj.DICTIONARY 
-        			&& type != PDFObj.NAME 
-        			&& type != PDFObj.STRING) {
-                os.write(' ');
-        	}
-            value.write(os);
+        if (hashMap != null) {
+            for (Entry<PDFName, PDFObj> e : hashMap.entrySet()) {
+                writeEntry(os, e.getKey(), e.getValue());
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                writeEntry(os, keys[i], values[i]);
+            }
         }
         os.write('>');
         os.write('>');
     }
+
+    private static void writeEntry(final OutputStream os, final PDFName key, final PDFObj value) throws IOException {
+    	key.write(os);
+    	int type = value.type();
+    	if (type != PDFObj.ARRAY 
+    			&& type != PDFObj.DICTIONARY 
+    			&& type != PDFObj.NAME 
+    			&& type != PDFObj.STRING) {
+            os.write(' ');
+    	}
+        value.write(os);
+    }
 }
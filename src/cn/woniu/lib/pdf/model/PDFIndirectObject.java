@@ -8,6 +8,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 import cn.woniu.lib.pdf.PDFWriter;
+import cn.woniu.lib.pdf.encode.ByteBuffer;
 import cn.woniu.lib.pdf.util.StringUtils;
 
 /** 
@@ -64,19 +65,40 @@ public class PDFIndirectObject {
 //		}
 	}
 
+	public PDFObj getObject() {
+		return object;
+	}
+
 	public PDFIndirectReference getIndirectReference() {
 		return new PDFIndirectReference(object.type(), number, generation);
 	}
 
 	public void writeTo(OutputStream os) throws IOException {
-		os.write(StringUtils.getISOBytes(String.valueOf(number)));
+		ByteBuffer.writeLong(os, number);
 		os.write(' ');
-		os.write(StringUtils.getISOBytes(String.valueOf(generation)));
+		ByteBuffer.writeLong(os, generation);
 		os.write(STARTOBJ);
 		object.write(os);
 		os.write(ENDOBJ);
 	}
 
+	/**
+	 * 写入对象, 对象的内容已经序列化
+	 * @param os
+	 * @param content object.write()的结果
+	 * @param off
+	 * @param len
+	 * @throws IOException
+	 */
+	public void writeTo(OutputStream os, byte[] content, int off, int len) throws IOException {
+		ByteBuffer.writeLong(os, number);
+		os.write(' ');
+		ByteBuffer.writeLong(os, generation);
+		os.write(STARTOBJ);
+		os.write(content, off, len);
+		os.write(ENDOBJ);
+	}
+
 	@Override
 	public String toString() {
 		return new StringBuffer().append(number).append(' ').append(generation).append(" R: ").append(object != null ? object.toString(): "null").toString();
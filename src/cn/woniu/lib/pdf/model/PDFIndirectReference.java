@@ -8,7 +8,9 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 import cn.woniu.lib.pdf.PDFWriter;
+import cn.woniu.lib.pdf.encode.ByteBuffer;
 import cn.woniu.lib.pdf.encode.PdfEncodings;
+import cn.woniu.lib.pdf.util.StringUtils;
 
 /** 
  * @ClassName: PDFIndirect <br/> 
@@ -30,6 +32,8 @@ public class PDFIndirectReference extends PDFObj {
 
 	// membervariables
 
+	static final byte REFERENCE[] = StringUtils.getISOBytes(" R");
+
 	/** the object number */
 	protected int number;
 
@@ -51,7 +55,7 @@ public class PDFIndirectReference extends PDFObj {
 	 */
 
 	PDFIndirectReference(int type, int number, int generation) {
-		super(0, new StringBuffer().append(number).append(" ").append(generation).append(" R").toString());
+		super(0);
 		this.number = number;
 		this.generation = generation;
 	}
@@ -93,9 +97,24 @@ public class PDFIndirectReference extends PDFObj {
 		return new StringBuffer().append(number).append(" ").append(generation).append(" R").toString();
 	}
 
+	@Override
+	public byte[] getBytes() {
+		return PdfEncodings.convertToBytes(toString(), null);
+	}
+
 	@Override
 	public void write(OutputStream os) throws IOException {
-		os.write(PdfEncodings.convertToBytes(toString(), null));
+		write(os, number, generation);
+	}
+
+	/**
+	 * 写入"number generation R", 不生成String
+	 */
+	protected static void write(OutputStream os, int number, int generation) throws IOException {
+		ByteBuffer.writeLong(os, number);
+		os.write(' ');
+		ByteBuffer.writeLong(os, generation);
+		os.write(REFERENCE);
 	}
 	
 }
@@ -124,12 +124,26 @@ public class PDFName extends PDFObj implements Comparable<PDFName> {
      */
     public static byte[] encodeName(String name) {
     	int length = name.length();
+    	byte chars[] = new byte[length];
+    	for (int k = 0; k < length; k++) {
+    		chars[k] = (byte) name.charAt(k);
+    	}
+    	return encodeName(chars, length);
+    }
+
+    /**
+     * 同{@link #encodeName(String)}, 由未转义的字节(例如PDFToken中的NAME)编码
+     *
+     * @param name 未转义的名字, 不含'/'
+     * @param length 有效长度
+     * @return the encoded name
+     */
+    public static byte[] encodeName(byte name[], int length) {
     	ByteBuffer buf = new ByteBuffer(length + 20);
     	buf.append('/');
     	char c;
-    	char chars[] = name.toCharArray();
     	for (int k = 0; k < length; k++) {
-    		c = (char)(chars[k] & 0xff);
+    		c = (char)(name[k] & 0xff);
     		// Escape special characters
     		switch (c) {
     			case ' ':
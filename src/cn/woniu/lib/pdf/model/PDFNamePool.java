@@ -0,0 +1,165 @@
+/** 
+ * Copyright (c) 2018, Woniu1983 All Rights Reserved. 
+ * 
+ */ 
+package cn.woniu.lib.pdf.model;
+
+/** 
+ * @ClassName: PDFNamePool <br/> 
+ * @Description: 由未转义的字节(PDFToken的NAME token)查找<CODE>PDFName</CODE>, 查找时不创建对象.  <br/>
+ * PDFName中的常量(PDFName.staticNames)直接返回常量; 其它名字第一次出现时创建, 之后在同一个池中共享.
+ * PDFReader每次解析使用一个池. 查找不加锁, 添加时加锁, 可以被多个线程同时使用.
+ *
+ * @author woniu1983 
+ * @date: 2026年10月18日 上午3:41:08 <br/>
+ * @version  
+ * @since JDK 1.6 
+ */
+public class PDFNamePool {
+
+	/** 池中的一个名字, 创建后不再修改 */
+	private static final class Entry {
+
+		/** 未转义的字节, 不含'/' */
+		final byte key[];
+
+		final int hash;
+
+		final PDFName name;
+
+		Entry(byte key[], int hash, PDFName name) {
+			this.key = key;
+			this.hash = hash;
+			this.name = name;
+		}
+	}
+
+	/** PDFName中的常量, 类初始化后只读 */
+	private static final Entry KNOWN[];
+
+	static {
+		KNOWN = new Entry[tableSize(PDFName.staticNames.size())];
+		for (java.util.Map.Entry<String, PDFName> e : PDFName.staticNames.entrySet()) {
+			String s = e.getKey();
+			byte key[] = new byte[s.length()];
+			for (int k = 0; k < key.length; k++) {
+				key[k] = (byte) s.charAt(k);
+			}
+			insert(KNOWN, new Entry(key, hash(key, key.length), e.getValue()));
+		}
+	}
+
+	/** 文档中的其它名字; 扩容时整体替换 */
+	private volatile Entry table[] = new Entry[64];
+
+	/** table中的条目数, 只在加锁时访问 */
+	private int count;
+
+	/**
+	 * 容量为2的幂, 至多一半被占用
+	 */
+	private static int tableSize(int count) {
+		int size = 16;
+		while (size < count * 2) {
+			size <<= 1;
+		}
+		return size;
+	}
+
+	private static int hash(byte b[], int len) {
+		int h = 0;
+		for (int k = 0; k < len; k++) {
+			h = 31 * h + (b[k] & 0xff);
+		}
+		return h ^ (h >>> 16);
+	}
+
+	private static PDFName find(Entry tab[], byte b[], int len, int hash) {
+		int mask = tab.length - 1;
+		for (int i = hash & mask;; i = (i + 1) & mask) {
+			Entry e = tab[i];
+			if (e == null) {
+				return null;
+			}
+			if (e.hash == hash && equals(e.key, b, len)) {
+				return e.name;
+			}
+		}
+	}
+
+	private static boolean equals(byte key[], byte b[], int len) {
+		if (key.length != len) {
+			return false;
+		}
+		for (int k = 0; k < len; k++) {
+			if (key[k] != b[k]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void insert(Entry tab[], Entry e) {
+		int mask = tab.length - 1;
+		int i = e.hash & mask;
+		while (tab[i] != null) {
+			i = (i + 1) & mask;
+		}
+		tab[i] = e;
+	}
+
+	/**
+	 * 
+	 * @Title: get  
+	 * @Description: 返回与未转义的字节b[0, len)对应的PDFName, 例如PDFToken.getTokenBuffer()
+	 *
+	 * @param b 未转义的名字, 不含'/'
+	 * @param len 有效长度
+	 * @return 常量或池中共享的PDFName
+	 */
+	public PDFName get(byte b[], int len) {
+		int hash = hash(b, len);
+		PDFName name = find(KNOWN, b, len, hash);
+		if (name == null) {
+			name = find(table, b, len, hash);
+		}
+		if (name == null) {
+			name = add(b, len, hash);
+		}
+		return name;
+	}
+
+	private synchronized PDFName add(byte b[], int len, int hash) {
+		Entry tab[] = table;
+		// 其它线程可能已经添加
+		PDFName name = find(tab, b, len, hash);
+		if (name != null) {
+			return name;
+		}
+		byte key[] = new byte[len];
+		System.arraycopy(b, 0, key, 0, len);
+		name = new PDFName(PDFName.encodeName(key, len));
+		if ((count + 1) * 2 > tab.length) {
+			Entry bigger[] = new Entry[tab.length * 2];
+			for (int i = 0; i < tab.length; i++) {
+				if (tab[i] != null) {
+					insert(bigger, tab[i]);
+				}
+			}
+			insert(bigger, new Entry(key, hash, name));
+			table = bigger;
+		} else {
+			insert(tab, new Entry(key, hash, name));
+		}
+		count++;
+		return name;
+	}
+
+	/**
+	 * 池中(不含常量)的名字个数
+	 * @return
+	 */
+	public synchronized int size() {
+		return count;
+	}
+}
@@ -4,7 +4,12 @@
  */ 
 package cn.woniu.lib.pdf.model;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 import cn.woniu.lib.pdf.encode.ByteBuffer;
+import cn.woniu.lib.pdf.encode.PdfEncodings;
+import cn.woniu.lib.pdf.exception.ExceptionConverter;
 
 /** 
  * @ClassName: PDFNumeric <br/> 
@@ -22,16 +27,17 @@ public class PDFNumeric extends PDFObj {
 
     private double value;
 
+    /** 由int/long构造: bytes为null时按整数写入, 否则按formatDouble()写入 */
+    private boolean integer;
+
 	protected PDFNumeric(int value) {
-        super(NUMBER);
-        this.value = value;
-        setContent(String.valueOf(value));
+        this((long) value);
 	}
 	
     public PDFNumeric(long value) {
         super(NUMBER);
         this.value = value;
-        setContent(String.valueOf(value));
+        this.integer = true;
     }
     
     public PDFNumeric(String content) {
@@ -45,15 +51,52 @@ public class PDFNumeric extends PDFObj {
         }
     }
     
+    /**
+     * 由PDFToken直接构造, 不再从String解析
+     * @param value 数值
+     * @param content 数值在PDF中的原始表示, 例如 "612" "-0.5"
+     */
+    public PDFNumeric(double value, byte content[]) {
+        super(NUMBER, content);
+        this.value = value;
+    }
+    
     public PDFNumeric(double value) {
         super(NUMBER);
         this.value = value;
-        setContent(ByteBuffer.formatDouble(value));
     }
     
     public PDFNumeric(float value) {
         this((double)value);
     }
+
+    /**
+     * 创建新的对象, 写入结果与{@link #writeNumber(OutputStream, double)}相同
+     * @param value
+     * @return
+     */
+    public static PDFNumeric create(double value) {
+        long l = (long) value;
+        if (l == value) {
+            return new PDFNumeric(l);
+        }
+        return new PDFNumeric(value);
+    }
+
+    /**
+     * 不保留原始文本时数值的写法: 整数值按整数写入, 否则按formatDouble()
+     * @param os
+     * @param value
+     * @throws IOException
+     */
+    public static void writeNumber(OutputStream os, double value) throws IOException {
+        long l = (long) value;
+        if (l == value) {
+            ByteBuffer.writeLong(os, l);
+        } else {
+            ByteBuffer.writeDouble(os, value);
+        }
+    }
     
     // methods returning the value of this object
     
@@ -80,7 +123,47 @@ public class PDFNumeric extends PDFObj {
     
     public void increment() {
         value += 1.0;
-        setContent(ByteBuffer.formatDouble(value));
+        integer = false;
+        bytes = null;
+    }
+
+    /**
+     * 由数值构造的对象在需要时才生成文本
+     */
+    @Override
+    public byte[] getBytes() {
+        if (bytes == null) {
+            ByteBuffer buf = new ByteBuffer(16);
+            try {
+                writeValue(buf);
+            } catch (IOException e) {
+                throw new ExceptionConverter(e);
+            }
+            bytes = buf.toByteArray();
+        }
+        return bytes;
+    }
+
+    @Override
+    public void write(OutputStream os) throws IOException {
+        if (bytes != null) {
+            os.write(bytes);
+        } else {
+            writeValue(os);
+        }
+    }
+
+    private void writeValue(OutputStream os) throws IOException {
+        if (integer) {
+            ByteBuffer.writeLong(os, (long) value);
+        } else {
+            ByteBuffer.writeDouble(os, value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return PdfEncodings.convertToString(getBytes(), null);
     }
 
 }
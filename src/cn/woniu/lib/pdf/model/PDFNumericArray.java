@@ -0,0 +1,256 @@
+/** 
+ * Copyright (c) 2018, Woniu1983 All Rights Reserved. 
+ * 
+ */ 
+package cn.woniu.lib.pdf.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+/** 
+ * @ClassName: PDFNumericArray <br/> 
+ * @Description: 只含数值的<CODE>PDFArray</CODE>, 例如/MediaBox, /CropBox, /W, /Matrix.  <br/>
+ * 数值存放在double数组中, 不为每个元素创建<CODE>PDFNumeric</CODE>;
+ * 按下标读取时才创建(每次都是新对象), 写入时按{@link PDFNumeric#writeNumber(OutputStream, double)}输出.
+ * 修改数组(set, add, remove, getArrayList()等)时转为普通的<CODE>PDFArray</CODE>存储.
+ *
+ * @author woniu1983 
+ * @date: 2026年10月18日 上午3:05:26 <br/>
+ * @version  
+ * @since JDK 1.6 
+ */
+public class PDFNumericArray extends PDFArray {
+
+	private static final long serialVersionUID = -2153279840527418745L;
+
+	/** 数值, 转为普通存储后为null */
+	private double values[];
+
+	public PDFNumericArray(final double values[], final int count) {
+		super(0);
+		arrayList = null;
+		this.values = new double[count];
+		System.arraycopy(values, 0, this.values, 0, count);
+	}
+
+	public PDFNumericArray(final double values[]) {
+		this(values, values.length);
+	}
+
+	public PDFNumericArray(final float values[]) {
+		super(0);
+		arrayList = null;
+		this.values = new double[values.length];
+		for (int k = 0; k < values.length; ++k)
+			this.values[k] = values[k];
+	}
+
+	public PDFNumericArray(final int values[]) {
+		super(0);
+		arrayList = null;
+		this.values = new double[values.length];
+		for (int k = 0; k < values.length; ++k)
+			this.values[k] = values[k];
+	}
+
+	/**
+	 * 是否仍以double数组存放
+	 * @return
+	 */
+	public boolean isCompact() {
+		return values != null;
+	}
+
+	/**
+	 * 下标为idx的数值, 不创建对象
+	 * @param idx
+	 * @return
+	 */
+	public double doubleValue(final int idx) {
+		if (values != null)
+			return values[idx];
+		return getAsNumber(idx).doubleValue();
+	}
+
+	public float floatValue(final int idx) {
+		return (float) doubleValue(idx);
+	}
+
+	/**
+	 * 转为普通的ArrayList存储
+	 */
+	private void inflate() {
+		if (values == null)
+			return;
+		arrayList = new ArrayList<PDFObj>(values.length + 4);
+		for (int k = 0; k < values.length; ++k)
+			arrayList.add(PDFNumeric.create(values[k]));
+		values = null;
+	}
+
+	@Override
+	public String toString() {
+		if (values == null)
+			return super.toString();
+		StringBuilder sb = new StringBuilder();
+		sb.append('[');
+		for (int k = 0; k < values.length; ++k) {
+			if (k > 0)
+				sb.append(", ");
+			sb.append(getPDFObj(k));
+		}
+		return sb.append(']').toString();
+	}
+
+	@Override
+	public PDFObj set(final int idx, final PDFObj obj) {
+		inflate();
+		return super.set(idx, obj);
+	}
+
+	@Override
+	public PDFObj remove(final int idx) {
+		inflate();
+		return super.remove(idx);
+	}
+
+	@Override
+	@Deprecated
+	public ArrayList<PDFObj> getArrayList() {
+		inflate();
+		return super.getArrayList();
+	}
+
+	@Override
+	public int size() {
+		return values != null ? values.length : super.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return values != null ? values.length == 0 : super.isEmpty();
+	}
+
+	@Override
+	public boolean add(final PDFObj object) {
+		inflate();
+		return super.add(object);
+	}
+
+	@Override
+	public boolean add(final float values[]) {
+		inflate();
+		return super.add(values);
+	}
+
+	@Override
+	public boolean add(final int values[]) {
+		inflate();
+		return super.add(values);
+	}
+
+	@Override
+	public void add(final int index, final PDFObj element) {
+		inflate();
+		super.add(index, element);
+	}
+
+	@Override
+	public void addFirst(final PDFObj object) {
+		inflate();
+		super.addFirst(object);
+	}
+
+	@Override
+	public boolean contains(final PDFObj object) {
+		if (values == null)
+			return super.contains(object);
+		// PDFNumeric没有equals, 而元素在读取时才创建, 不会是已有的对象
+		return false;
+	}
+
+	@Override
+	public ListIterator<PDFObj> listIterator() {
+		inflate();
+		return super.listIterator();
+	}
+
+	@Override
+	public PDFObj getPDFObj(final int idx) {
+		if (values == null)
+			return super.getPDFObj(idx);
+		return PDFNumeric.create(doubleValue(idx));
+	}
+
+	@Override
+	public Iterator<PDFObj> iterator() {
+		if (values == null)
+			return super.iterator();
+		return new NumberIterator();
+	}
+
+	@Override
+	public long[] asLongArray() {
+		if (values == null)
+			return super.asLongArray();
+		long[] rslt = new long[values.length];
+		for (int k = 0; k < rslt.length; ++k)
+			rslt[k] = (long) values[k];
+		return rslt;
+	}
+
+	@Override
+	public double[] asDoubleArray() {
+		if (values == null)
+			return super.asDoubleArray();
+		return values.clone();
+	}
+
+	@Override
+	public void write(final OutputStream os) throws IOException {
+		if (values == null) {
+			super.write(os);
+			return;
+		}
+		os.write('[');
+		for (int k = 0; k < values.length; ++k) {
+			if (k > 0)
+				os.write(' ');
+			PDFNumeric.writeNumber(os, values[k]);
+		}
+		os.write(']');
+	}
+
+	/**
+	 * 按下标遍历, remove()时转为普通存储
+	 */
+	private class NumberIterator implements Iterator<PDFObj> {
+
+		private int next;
+
+		private int last = -1;
+
+		public boolean hasNext() {
+			return next < size();
+		}
+
+		public PDFObj next() {
+			if (next >= size())
+				throw new NoSuchElementException();
+			last = next++;
+			return getPDFObj(last);
+		}
+
+		public void remove() {
+			if (last < 0)
+				throw new IllegalStateException();
+			PDFNumericArray.this.remove(last);
+			next = last;
+			last = -1;
+		}
+	}
+}
@@ -11,9 +11,12 @@ import java.io.OutputStream;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 
+import cn.woniu.lib.pdf.CompressionPolicy;
 import cn.woniu.lib.pdf.PDFReader;
 import cn.woniu.lib.pdf.PDFWriter;
 import cn.woniu.lib.pdf.encode.OutputStreamCounter;
+import cn.woniu.lib.pdf.encode.ParallelDeflater;
+import cn.woniu.lib.pdf.encode.ZipPool;
 import cn.woniu.lib.pdf.exception.ExceptionConverter;
 
 
@@ -57,11 +60,25 @@ public class PDFStream extends PDFDictionary {
 
 	protected ByteArrayOutputStream streamBytes = null;
 	protected InputStream inputStream;
+	/** 分块提供内容, 与inputStream一样在写入时才读取 */
+	protected StreamProducer producer;
+	/** 内容来自inputStream/producer时/Length的间接对象, 由PDFBody在添加时分配, 流写完后写入 */
 	protected PDFIndirectReference ref;
-	protected int inputStreamLength = -1;
+	protected long inputStreamLength = -1;
 	protected PDFWriter writer;
 	protected int rawLength;
 
+	/** 延迟压缩的压缩级别, 见deferFlateCompress() */
+	protected int deferredLevel = 0;
+	protected boolean deferred = false;
+
+	/** 延迟压缩时决定压缩级别的策略, 为null时使用deferredLevel */
+	protected CompressionPolicy policy;
+	protected CompressionPolicy.StreamType policyType;
+
+	/** 不小于此长度的内容用ParallelDeflater多线程压缩, <= 0 时不使用 */
+	private static int parallelDeflateThreshold = 4 * 1024 * 1024;
+
 	static final byte STARTSTREAM[] = getISOBytes("stream\n");
 	static final byte ENDSTREAM[] = getISOBytes("\nendstream");
 	static final int SIZESTREAM = STARTSTREAM.length + ENDSTREAM.length;
@@ -79,8 +96,16 @@ public class PDFStream extends PDFDictionary {
 		type = STREAM;
 		this.inputStream = inputStream;
 		this.writer = writer;
-		//		ref = writer.getPdfIndirectReference();//TODO
-		put(PDFName.LENGTH, ref);
+	}
+
+	/**
+	 * 内容在写入时才由producer分块提供, 不在内存中保存. /Length为间接对象, 流写完后才写入
+	 * @param producer
+	 */
+	public PDFStream(StreamProducer producer) {
+		super();
+		type = STREAM;
+		this.producer = producer;
 	}
 
 	/**
@@ -100,6 +125,45 @@ public class PDFStream extends PDFDictionary {
 	//        writer.addToBody(new PDFNumeric(inputStreamLength), ref, false);
 	//    }
 
+	/**
+	 * 设置多线程压缩的最小内容长度, <= 0 时总是单线程压缩
+	 * @param threshold
+	 */
+	public static void setParallelDeflateThreshold(int threshold) {
+		parallelDeflateThreshold = threshold;
+	}
+
+	public static int getParallelDeflateThreshold() {
+		return parallelDeflateThreshold;
+	}
+
+	/**
+	 * 内容来自InputStream或StreamProducer, 只能写一次
+	 */
+	public boolean hasInputStream() {
+		return inputStream != null || producer != null;
+	}
+
+	/**
+	 * 设置内容来自InputStream/StreamProducer时/Length的间接对象
+	 * @param ref
+	 */
+	public void setLengthReference(PDFIndirectReference ref) {
+		this.ref = ref;
+		put(PDFName.LENGTH, ref);
+	}
+
+	public PDFIndirectReference getLengthReference() {
+		return ref;
+	}
+
+	/**
+	 * 内容来自InputStream/StreamProducer时写入的(压缩后的)长度, 写入之前为-1
+	 */
+	public long getInputStreamLength() {
+		return inputStreamLength;
+	}
+
 	/**
 	 * Gets the raw length of the stream.
 	 * @return the raw length of the stream
@@ -125,10 +189,6 @@ public class PDFStream extends PDFDictionary {
 			return;
 		}
 		this.compressionLevel = compressionLevel;
-		if (inputStream != null) {
-			compressed = true;
-			return;
-		}
 		// check if a filter already exists
 		PDFObj filter = PDFReader.getPdfObject(get(PDFName.FILTER));
 		if (filter != null) {
@@ -144,36 +204,106 @@ public class PDFStream extends PDFDictionary {
 				throw new RuntimeException("stream.could.not.be.compressed.filter.is.not.a.name.or.array");
 			}
 		}
+		if (hasInputStream()) {
+			// 在write()时压缩, 过滤器现在就加上
+			addFlateFilter(filter);
+			compressed = true;
+			return;
+		}
 		try {
 			// compress
 			ByteArrayOutputStream stream = new ByteArrayOutputStream();
-			Deflater deflater = new Deflater(compressionLevel);
-			DeflaterOutputStream zip = new DeflaterOutputStream(stream, deflater);
-			if (streamBytes != null)
-				streamBytes.writeTo(zip);
-			else
-				zip.write(bytes);
-			zip.close();
-			deflater.end();
+			int length = streamBytes != null ? streamBytes.size() : bytes.length;
+			if (parallelDeflateThreshold > 0 && length >= parallelDeflateThreshold && ParallelDeflater.isAvailable()) {
+				byte data[] = streamBytes != null ? streamBytes.toByteArray() : bytes;
+				ParallelDeflater.compress(data, 0, data.length, compressionLevel, stream);
+			}
+			else {
+				Deflater deflater = ZipPool.getDeflater(compressionLevel);
+				try {
+					DeflaterOutputStream zip = new DeflaterOutputStream(stream, deflater);
+					if (streamBytes != null)
+						streamBytes.writeTo(zip);
+					else
+						zip.write(bytes);
+					zip.close();
+				} finally {
+					ZipPool.release(deflater);
+				}
+			}
 			// update the object
 			streamBytes = stream;
 			bytes = null;
 			put(PDFName.LENGTH, new PDFNumeric(streamBytes.size()));
-			if (filter == null) {
-				put(PDFName.FILTER, PDFName.FLATEDECODE);
-			}
-			else {
-				PDFArray filters = new PDFArray(filter);
-				filters.add(0, PDFName.FLATEDECODE);
-				put(PDFName.FILTER, filters);
-			}
+			addFlateFilter(filter);
 			compressed = true;
 		}
 		catch(IOException ioe) {
 			throw new ExceptionConverter(ioe);
 		}
 	}
+
+	/**
+	 * FlateDecode放在已有的过滤器之前
+	 * @param filter 压缩前的/Filter, 可以为null
+	 */
+	private void addFlateFilter(PDFObj filter) {
+		if (filter == null) {
+			put(PDFName.FILTER, PDFName.FLATEDECODE);
+		}
+		else {
+			PDFArray filters = filter.isArray() ? new PDFArray((PDFArray) filter) : new PDFArray(filter);
+			filters.add(0, PDFName.FLATEDECODE);
+			put(PDFName.FILTER, filters);
+		}
+	}
 	
+	/**
+	 * 延迟压缩: 在写入之前才由PDFBody调用compressDeferred()压缩, 可以在其他线程执行
+	 * @param compressionLevel
+	 */
+	public void deferFlateCompress(int compressionLevel) {
+		if (compressed) {
+			return;
+		}
+		this.deferredLevel = compressionLevel;
+		this.deferred = true;
+	}
+
+	public boolean isCompressDeferred() {
+		return deferred;
+	}
+
+	/**
+	 * 设置延迟压缩使用的策略, 在compressDeferred()时才决定压缩级别
+	 * @param policy 为null时使用deferFlateCompress()的压缩级别
+	 * @param type 流的类型
+	 */
+	public void setCompressionPolicy(CompressionPolicy policy, CompressionPolicy.StreamType type) {
+		this.policy = policy;
+		this.policyType = type;
+	}
+
+	/**
+	 * 执行deferFlateCompress()要求的压缩
+	 */
+	public void compressDeferred() {
+		if (deferred) {
+			deferred = false;
+			int level = deferredLevel;
+			if (policy != null && !hasInputStream()) {
+				if (bytes != null) {
+					level = policy.getCompressionLevel(policyType, level, bytes, bytes.length);
+				} else if (streamBytes != null) {
+					level = policy.getCompressionLevel(policyType, level, streamBytes.toByteArray(), streamBytes.size());
+				}
+			}
+			if (level != CompressionPolicy.RAW) {
+				flateCompress(level);
+			}
+		}
+	}
+
 	protected void superToPdf(OutputStream os) throws IOException {
 		super.write(os);
     }
@@ -181,37 +311,41 @@ public class PDFStream extends PDFDictionary {
 
 	@Override
 	public void write(OutputStream os) throws IOException {
-		if (inputStream != null && compressed) {
-			put(PDFName.FILTER, PDFName.FLATEDECODE);
-		}
-
 		superToPdf(os);
 		os.write(STARTSTREAM);
 		
-		if (inputStream != null) {
-			rawLength = 0;
+		if (hasInputStream()) {
 			DeflaterOutputStream def = null;
 			OutputStreamCounter osc = new OutputStreamCounter(os);
 			OutputStream fout = osc;
 			Deflater deflater = null;
 			if (compressed) {
-				deflater = new Deflater(compressionLevel);
+				deflater = ZipPool.getDeflater(compressionLevel);
 				fout = def = new DeflaterOutputStream(fout, deflater, 0x8000);
 			}
-
-			byte buf[] = new byte[4192];
-			while (true) {
-				int n = inputStream.read(buf);
-				if (n <= 0)
-					break;
-				fout.write(buf, 0, n);
-				rawLength += n;
-			}
-			if (def != null) {
-				def.finish();
-				deflater.end();
+			OutputStreamCounter raw = new OutputStreamCounter(fout);
+			try {
+				if (producer != null) {
+					producer.writeTo(raw);
+				} else {
+					byte buf[] = new byte[4192];
+					while (true) {
+						int n = inputStream.read(buf);
+						if (n <= 0)
+							break;
+						raw.write(buf, 0, n);
+					}
+				}
+				if (def != null) {
+					def.finish();
+				}
+			} finally {
+				if (deflater != null) {
+					ZipPool.release(deflater);
+				}
 			}
-			inputStreamLength = (int)osc.getCounter();
+			rawLength = (int) raw.getCounter();
+			inputStreamLength = osc.getCounter();
 
 		} else {
 			if (streamBytes != null) {
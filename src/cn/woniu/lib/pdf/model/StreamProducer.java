@@ -0,0 +1,32 @@
+/** 
+ * Copyright (c) 2018, Woniu1983 All Rights Reserved. 
+ * 
+ */ 
+package cn.woniu.lib.pdf.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/** 
+ * @ClassName: StreamProducer <br/> 
+ * @Description: 分块提供流的内容, 见PDFStream(StreamProducer).  <br/> 
+ * 内容在流写入输出时才生成, 直接经过压缩写到输出, 整个内容不需要在内存中.
+ * 
+ * @author woniu1983 
+ * @date: 2026年10月18日 上午0:41:26 <br/>
+ * @version  
+ * @since JDK 1.6 
+ */
+public interface StreamProducer {
+
+	/**
+	 * 
+	 * @Title: writeTo  
+	 * @Description: 把流的内容(未压缩)分块写到out, 每个流只调用一次. 不要关闭out
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	void writeTo(OutputStream out) throws IOException;
+
+}
@@ -89,7 +89,12 @@ public class ImageStream extends PDFStream {
 				// will also have the CCITT parameters
 				int colorspace = image.getColorspace();
 				bytes = image.getRawData();
-				put(PDFName.LENGTH, new PDFNumeric(bytes.length));
+				if (bytes == null && image.getRawDataProducer() != null) {
+					// 写入时才读取数据, /Length为间接对象
+					producer = image.getRawDataProducer();
+				} else {
+					put(PDFName.LENGTH, new PDFNumeric(bytes.length));
+				}
 
 				int bpc = image.getBpc();
 				if (bpc > 0xff) {
@@ -150,7 +155,8 @@ public class ImageStream extends PDFStream {
 					if (image.isDeflated()) {
 						put(PDFName.FILTER, PDFName.FLATEDECODE);
 					} else {
-						flateCompress(image.getCompressionLevel());
+						// 写入前才压缩, 见PDFBody
+						deferFlateCompress(image.getCompressionLevel());
 					}
 				}
 				return;
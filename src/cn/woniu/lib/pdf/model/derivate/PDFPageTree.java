@@ -6,8 +6,6 @@ package cn.woniu.lib.pdf.model.derivate;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Set;
 
 import cn.woniu.lib.pdf.PDFReader;
 import cn.woniu.lib.pdf.encode.IntHashtable;
@@ -15,6 +13,7 @@ import cn.woniu.lib.pdf.model.PDFArray;
 import cn.woniu.lib.pdf.model.PDFDictionary;
 import cn.woniu.lib.pdf.model.PDFName;
 import cn.woniu.lib.pdf.model.PDFNumeric;
+import cn.woniu.lib.pdf.model.PDFNumericArray;
 import cn.woniu.lib.pdf.model.PDFObj;
 
 
@@ -54,9 +53,9 @@ public class PDFPageTree {
 
 	private boolean keepPages;
 	/**
-	 * Keeps track of all pages nodes to avoid circular references.
+	 * Keeps track of all pages nodes (by object number) to avoid circular references.
 	 */
-	private Set<PDFObj> pagesNodes = new HashSet<PDFObj>();
+	private IntHashtable pagesNodes;
 
 	public PDFPageTree(final PDFReader reader) throws IOException {
 		this.reader = reader;
@@ -70,8 +69,10 @@ public class PDFPageTree {
 		refHashTable = null;
 		pageRefs = new ArrayList<PRIndirectReference>();
 		pageDics = new ArrayList<PDFDictionary>();
+		pagesNodes = new IntHashtable();
 		iteratePages((PRIndirectReference)reader.catalog.get(PDFName.PAGES));
 		pageDics = null;
+		pagesNodes = null;
 		reader.rootPages.put(PDFName.COUNT, new PDFNumeric(pageRefs.size()));
 	}
 
@@ -79,7 +80,7 @@ public class PDFPageTree {
 		PDFDictionary page = (PDFDictionary)PDFReader.getPdfObject(rpage);
 		if (page == null)
 			return;
-		if (!pagesNodes.add(PDFReader.getPdfObject(rpage)))
+		if (pagesNodes.put(rpage.getNumber(), 1) != 0)
 			throw new IOException("illegal pages tree");
 		PDFArray kidsPR = page.getAsArray(PDFName.KIDS);
 		// reference to a leaf
@@ -93,7 +94,7 @@ public class PDFPageTree {
 					page.put(key, dic.get(key));
 			}
 			if (page.get(PDFName.MEDIABOX) == null) {
-				PDFArray arr = new PDFArray(new float[]{0,0,595,842});
+				PDFArray arr = new PDFNumericArray(new float[]{0,0,595,842});
 				page.put(PDFName.MEDIABOX, arr);
 			}
 			pageRefs.add(rpage);
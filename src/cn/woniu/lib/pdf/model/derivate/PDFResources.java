@@ -31,7 +31,11 @@ public class PDFResources extends PDFDictionary {
         if (dic == null) {
             put(key, resource);
         } else {
-            dic.putAll(resource);
+            // 原字典可能被其他页面共用, 合并到新的字典中
+            PDFDictionary merged = new PDFDictionary();
+            merged.putAll(dic);
+            merged.putAll(resource);
+            put(key, merged);
         }
     }
 }
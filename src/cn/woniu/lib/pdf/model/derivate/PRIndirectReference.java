@@ -9,7 +9,6 @@ import java.io.OutputStream;
 
 import cn.woniu.lib.pdf.PDFReader;
 import cn.woniu.lib.pdf.PDFWriter;
-import cn.woniu.lib.pdf.encode.PdfEncodings;
 import cn.woniu.lib.pdf.model.PDFIndirectReference;
 
 /** 
@@ -50,13 +49,7 @@ public class PRIndirectReference extends PDFIndirectReference {
 	public void write(PDFWriter writer, OutputStream os) throws IOException {
 		if (writer != null) {
 			int n = writer.getNewObjectNumber(reader, number, generation);
-			String value = new StringBuffer().append(n)
-											.append(" ")
-											.append(reader.isAppendable() ? generation : 0)
-											.append(" R")
-											.toString();
-			byte[] encodeValue = PdfEncodings.convertToBytes(value, null);
-			os.write(encodeValue);
+			write(os, n, reader.isAppendable() ? generation : 0);
 		} else {
 			this.write(os);
 		}
@@ -11,6 +11,7 @@ import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 
 import cn.woniu.lib.pdf.PDFReader;
+import cn.woniu.lib.pdf.encode.ZipPool;
 import cn.woniu.lib.pdf.model.PDFDictionary;
 import cn.woniu.lib.pdf.model.PDFName;
 import cn.woniu.lib.pdf.model.PDFNumeric;
@@ -50,7 +51,7 @@ public class PRStream extends PDFStream {
         if (newDic != null)
             putAll(newDic);
         else
-            hashMap.putAll(stream.hashMap);
+            putAll(stream);
     }
 
     public PRStream(PRStream stream, PDFDictionary newDic, PDFReader reader) {
@@ -81,11 +82,14 @@ public class PRStream extends PDFStream {
         if (PDFConstant.compress) {
             try {
                 ByteArrayOutputStream stream = new ByteArrayOutputStream();
-                Deflater deflater = new Deflater(compressionLevel);
-                DeflaterOutputStream zip = new DeflaterOutputStream(stream, deflater);
-                zip.write(conts);
-                zip.close();
-                deflater.end();
+                Deflater deflater = ZipPool.getDeflater(compressionLevel);
+                try {
+                    DeflaterOutputStream zip = new DeflaterOutputStream(stream, deflater);
+                    zip.write(conts);
+                    zip.close();
+                } finally {
+                    ZipPool.release(deflater);
+                }
                 bytes = stream.toByteArray();
             }
             catch (IOException ioe) {
@@ -127,11 +131,14 @@ public class PRStream extends PDFStream {
         if (PDFConstant.compress && compress) {
             try {
                 ByteArrayOutputStream stream = new ByteArrayOutputStream();
-                Deflater deflater = new Deflater(compressionLevel);
-                DeflaterOutputStream zip = new DeflaterOutputStream(stream, deflater);
-                zip.write(data);
-                zip.close();
-                deflater.end();
+                Deflater deflater = ZipPool.getDeflater(compressionLevel);
+                try {
+                    DeflaterOutputStream zip = new DeflaterOutputStream(stream, deflater);
+                    zip.write(data);
+                    zip.close();
+                } finally {
+                    ZipPool.release(deflater);
+                }
                 bytes = stream.toByteArray();
                 this.compressionLevel = compressionLevel;
             }
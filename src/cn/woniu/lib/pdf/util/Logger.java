@@ -79,6 +79,13 @@ public class Logger {
 		return buffer.toString();
 	}
 	
+	/**
+	 * 是否输出Debug日志, 拼接日志内容代价较大时先判断
+	 */
+	public static boolean isDebugLevel() {
+		return mLevel <= DEBUG_LEVEL;
+	}
+
 	public static boolean isTestLevel() {
 		return (mLevel <= TEST_LEVEL) ? true : false;
 	}
@@ -0,0 +1,126 @@
+/** 
+ * Copyright (c) 2018, Woniu1983 All Rights Reserved. 
+ * 
+ */ 
+package test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Random;
+
+import cn.woniu.lib.pdf.io.BufferedRandomAccessFile;
+import cn.woniu.lib.pdf.io.CounterOutputStream;
+
+/** 
+ * @ClassName: BenchCopyOriginal <br/> 
+ * @Description: 复制原PDF(writeOrigPDF)的性能对比:  <br/> 
+ * 旧方式(BufferedRandomAccessFile + 4K数组 + 输出流) 与 FileChannel.transferTo.
+ * 测试resource下的PDF和一个合成的大文件(默认1G, 第一个参数可指定MB数).
+ * 
+ * @author woniu1983 
+ * @date: 2026年10月17日 下午11:52:08 <br/>
+ * @version  
+ * @since JDK 1.6 
+ */
+public class BenchCopyOriginal {
+
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws IOException {
+		long bigMB = args.length > 0 ? Long.parseLong(args[0]) : 1024;
+
+		File[] pdfs = new File("resource").listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.toLowerCase().endsWith(".pdf");
+			}
+		});
+		if (pdfs != null) {
+			for (File pdf : pdfs) {
+				bench(pdf, ROUNDS);
+			}
+		}
+
+		File big = File.createTempFile("bench-copy-", ".pdf");
+		try {
+			createFile(big, bigMB << 20);
+			bench(big, 2);
+		} finally {
+			big.delete();
+		}
+	}
+
+	private static void bench(File src, int rounds) throws IOException {
+		File out = File.createTempFile("bench-copy-out-", ".pdf");
+		try {
+			long stream = Long.MAX_VALUE;
+			long transfer = Long.MAX_VALUE;
+			// 交替执行, 各取最好的一次
+			for (int i = 0; i < rounds; i++) {
+				long t1 = System.nanoTime();
+				copyByStream(src, out);
+				long t2 = System.nanoTime();
+				copyByTransfer(src, out);
+				long t3 = System.nanoTime();
+				stream = Math.min(stream, t2 - t1);
+				transfer = Math.min(transfer, t3 - t2);
+			}
+			if (out.length() != src.length()) {
+				throw new IOException("copy length mismatch: " + out.length() + " != " + src.length());
+			}
+			System.out.println(String.format("%-24s %10d bytes  stream=%8.2fms  transferTo=%8.2fms",
+					src.getName(), src.length(), stream / 1e6, transfer / 1e6));
+		} finally {
+			out.delete();
+		}
+	}
+
+	/** 旧的writeOrigPDF: 4K数组复制 */
+	private static void copyByStream(File src, File dst) throws IOException {
+		BufferedRandomAccessFile raf = new BufferedRandomAccessFile(src, "r");
+		CounterOutputStream os = new CounterOutputStream(new FileOutputStream(dst));
+		try {
+			byte[] buff = new byte[4096];
+			int read = 0;
+			while ((read = raf.read(buff)) != -1) {
+				os.write(buff, 0, read);
+			}
+			os.flush();
+		} finally {
+			os.close();
+			raf.close();
+		}
+	}
+
+	/** 新的writeOrigPDF: FileChannel.transferTo */
+	private static void copyByTransfer(File src, File dst) throws IOException {
+		FileInputStream fis = new FileInputStream(src);
+		CounterOutputStream os = new CounterOutputStream(new FileOutputStream(dst));
+		try {
+			os.transferFrom(fis.getChannel(), 0, fis.getChannel().size());
+			os.flush();
+		} finally {
+			os.close();
+			fis.close();
+		}
+	}
+
+	private static void createFile(File file, long size) throws IOException {
+		byte[] block = new byte[1 << 20];
+		new Random(1).nextBytes(block);
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			long written = 0;
+			while (written < size) {
+				int n = (int)Math.min(block.length, size - written);
+				fos.write(block, 0, n);
+				written += n;
+			}
+		} finally {
+			fos.close();
+		}
+	}
+
+}
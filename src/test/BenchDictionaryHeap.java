@@ -0,0 +1,122 @@
+/** 
+ * Copyright (c) 2018, Woniu1983 All Rights Reserved. 
+ * 
+ */ 
+package test;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import cn.woniu.lib.pdf.PDFReader;
+import cn.woniu.lib.pdf.io.CounterOutputStream;
+import cn.woniu.lib.pdf.util.StringUtils;
+
+/** 
+ * @ClassName: BenchDictionaryHeap <br/> 
+ * @Description: 完全解析(非partial)后PDFReader占用的堆内存, 换算为每1000页:  <br/>
+ * resource/source.pdf, 以及一个合成的PDF(默认10000页, 第一个参数可指定),
+ * 每页有页面, 资源, 字体, 字体描述, 注释等常见的小字典.
+ *
+ * @author woniu1983 
+ * @date: 2026年10月18日 上午2:31:40 <br/>
+ * @version  
+ * @since JDK 1.6 
+ */
+public class BenchDictionaryHeap {
+
+	public static void main(String[] args) throws IOException {
+		int pages = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		measure(new File("resource/source.pdf"));
+		File file = File.createTempFile("bench-dict-", ".pdf");
+		try {
+			createFile(file, pages);
+			measure(file);
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static void measure(File file) throws IOException {
+		long heap = usedHeap();
+		long t0 = System.nanoTime();
+		PDFReader reader = new PDFReader(file.getPath(), false);
+		long t1 = System.nanoTime();
+		long retained = usedHeap() - heap;
+		int pages = reader.getPageCount();
+		System.out.println(String.format("%-24s pages=%6d  objects=%7d  open=%8.1fms  heap=%7.1fMB  per 1000 pages=%6.2fMB",
+				file.getName().startsWith("bench-dict-") ? "synthetic" : file.getName(), pages, reader.getXrefSize(),
+				(t1 - t0) / 1e6, retained / 1048576.0, retained / 1048576.0 * 1000 / pages));
+		reader.close();
+	}
+
+	/**
+	 * 每页8个对象: 页面, 内容流, 字体, 字体描述, 宽度数组, 两个注释, 图形状态
+	 */
+	private static void createFile(File file, int pages) throws IOException {
+		final int perPage = 8;
+		// 1: catalog, 2: pages, 之后每页perPage个
+		int size = 3 + pages * perPage;
+		long offsets[] = new long[size];
+		CounterOutputStream os = new CounterOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			write(os, "%PDF-1.4\n");
+			offsets[1] = os.getCounter();
+			write(os, "1 0 obj\n<</Type/Catalog/Pages 2 0 R>>\nendobj\n");
+			offsets[2] = os.getCounter();
+			StringBuilder kids = new StringBuilder();
+			for (int i = 0; i < pages; i++) {
+				kids.append(3 + i * perPage).append(" 0 R ");
+			}
+			write(os, "2 0 obj\n<</Type/Pages/Count " + pages + "/Kids[" + kids + "]>>\nendobj\n");
+			String content = "BT /F1 12 Tf 72 720 Td (Hello) Tj ET\n";
+			for (int i = 0; i < pages; i++) {
+				int n = 3 + i * perPage;
+				offsets[n] = os.getCounter();
+				write(os, n + " 0 obj\n<</Type/Page/Parent 2 0 R/MediaBox[0 0 595.28 841.89]/CropBox[0 0 595.28 841.89]/Rotate 0"
+						+ "/Resources<</Font<</F1 " + (n + 2) + " 0 R>>/ExtGState<</GS1 " + (n + 7) + " 0 R>>/ProcSet[/PDF/Text]>>"
+						+ "/Contents " + (n + 1) + " 0 R/Annots[" + (n + 5) + " 0 R " + (n + 6) + " 0 R]/StructParents " + i + ">>\nendobj\n");
+				offsets[n + 1] = os.getCounter();
+				write(os, (n + 1) + " 0 obj\n<</Length " + content.length() + ">>stream\n" + content + "endstream\nendobj\n");
+				offsets[n + 2] = os.getCounter();
+				write(os, (n + 2) + " 0 obj\n<</Type/Font/Subtype/TrueType/BaseFont/ArialMT/FirstChar 32/LastChar 126/Encoding/WinAnsiEncoding"
+						+ "/Widths " + (n + 4) + " 0 R/FontDescriptor " + (n + 3) + " 0 R>>\nendobj\n");
+				offsets[n + 3] = os.getCounter();
+				write(os, (n + 3) + " 0 obj\n<</Type/FontDescriptor/FontName/ArialMT/Flags 32/FontBBox[-665 -325 2000 1040]/ItalicAngle 0"
+						+ "/Ascent 905/Descent -212/CapHeight 716/StemV 80>>\nendobj\n");
+				offsets[n + 4] = os.getCounter();
+				write(os, (n + 4) + " 0 obj\n[278 278 355 556 556 889 667 191 333 333 389 584 278 333 278 278]\nendobj\n");
+				for (int k = 5; k <= 6; k++) {
+					offsets[n + k] = os.getCounter();
+					write(os, (n + k) + " 0 obj\n<</Type/Annot/Subtype/Link/Rect[72 " + (100 * k) + " 200 " + (100 * k + 20) + "]/Border[0 0 0]"
+							+ "/A<</S/URI/URI(http://example.com/" + i + ")>>/P " + n + " 0 R>>\nendobj\n");
+				}
+				offsets[n + 7] = os.getCounter();
+				write(os, (n + 7) + " 0 obj\n<</Type/ExtGState/CA 1/ca 1/LW 1/LC 0/LJ 0/ML 10/SA true>>\nendobj\n");
+			}
+			long xref = os.getCounter();
+			write(os, "xref\n0 " + size + "\n0000000000 65535 f \n");
+			for (int k = 1; k < size; k++) {
+				String off = String.valueOf(offsets[k]);
+				write(os, "0000000000".substring(off.length()) + off + " 00000 n \n");
+			}
+			write(os, "trailer\n<</Size " + size + "/Root 1 0 R>>\nstartxref\n" + xref + "\n%%EOF\n");
+		} finally {
+			os.close();
+		}
+	}
+
+	private static void write(CounterOutputStream os, String s) throws IOException {
+		os.write(StringUtils.getISOBytes(s));
+	}
+
+	private static long usedHeap() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+}
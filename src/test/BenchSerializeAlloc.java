@@ -0,0 +1,113 @@
+/** 
+ * Copyright (c) 2018, Woniu1983 All Rights Reserved. 
+ * 
+ */ 
+package test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+
+import cn.woniu.lib.pdf.PDFReader;
+import cn.woniu.lib.pdf.PDFWatermark;
+import cn.woniu.lib.pdf.arc.PDFCrossReference;
+import cn.woniu.lib.pdf.image.PNGImage;
+import cn.woniu.lib.pdf.io.CounterOutputStream;
+import cn.woniu.lib.pdf.model.PDFArray;
+import cn.woniu.lib.pdf.model.PDFDictionary;
+import cn.woniu.lib.pdf.model.PDFIndirectObject;
+import cn.woniu.lib.pdf.model.PDFIndirectReference;
+import cn.woniu.lib.pdf.model.PDFName;
+import cn.woniu.lib.pdf.model.PDFNumeric;
+
+/** 
+ * @ClassName: BenchSerializeAlloc <br/> 
+ * @Description: 对象序列化的内存分配: 每个改写的页面分配多少字节.  <br/> 
+ * serialize: 只序列化(对象预先创建): 每页为页面对象, 一个新建的字典对象和两条xref记录, 写到不保存数据的输出;
+ * stamp: 整个PDFWatermark.appendWatermark()按页面平均.
+ * 用HotSpot的com.sun.management.ThreadMXBean统计当前线程分配的字节数. 第一个参数可指定PDF.
+ * 
+ * @author woniu1983 
+ * @date: 2026年10月18日 上午1:05:47 <br/>
+ * @version  
+ * @since JDK 1.6 
+ */
+public class BenchSerializeAlloc {
+
+	private static final int WARMUP = 5;
+
+	private static final int ROUNDS = 10;
+
+	public static void main(String[] args) throws IOException {
+		String src = args.length > 0 ? args[0] : "resource/source.pdf";
+		PDFReader reader = new PDFReader(src);
+		int pages = reader.getPageCount();
+		// 每页: 页面对象(原编号), 一个新建的字典对象, 两条xref记录
+		PDFIndirectObject[] objects = new PDFIndirectObject[pages * 2];
+		PDFCrossReference[] xrefs = new PDFCrossReference[pages * 2];
+		int number = 100000;
+		for (int i = 0; i < pages; i++) {
+			PDFDictionary created = new PDFDictionary();
+			created.put(PDFName.LENGTH, new PDFNumeric(4096 + i));
+			created.put(PDFName.BBOX, new PDFArray(new float[] {0, 0, 595.28f, 841.89f}));
+			created.put(PDFName.RESOURCES, new PDFIndirectReference(0, number + i));
+			objects[2 * i] = new PDFIndirectObject(i + 1, 0, reader.getPageN(i + 1), null);
+			objects[2 * i + 1] = new PDFIndirectObject(number + i, 0, created, null);
+			xrefs[2 * i] = new PDFCrossReference(i + 1, 1000L * i);
+			xrefs[2 * i + 1] = new PDFCrossReference(number + i, 1000L * i + 500);
+		}
+		CounterOutputStream sink = new CounterOutputStream(new OutputStream() {
+			public void write(int b) {
+			}
+
+			public void write(byte[] b, int off, int len) {
+			}
+		});
+
+		for (int i = 0; i < WARMUP; i++) {
+			serialize(objects, xrefs, sink);
+		}
+		long before = allocated();
+		for (int i = 0; i < ROUNDS; i++) {
+			serialize(objects, xrefs, sink);
+		}
+		long serialize = (allocated() - before) / ROUNDS / pages;
+		reader.close();
+
+		File out = File.createTempFile("bench-alloc-", ".pdf");
+		long stamp = 0;
+		try {
+			for (int i = 0; i < WARMUP + ROUNDS; i++) {
+				long start = allocated();
+				PDFReader r = new PDFReader(src);
+				PDFWatermark w = new PDFWatermark(r, out, PNGImage.getImage("resource/p.png"));
+				w.appendWatermark();
+				w.close();
+				r.close();
+				if (i >= WARMUP) {
+					stamp += allocated() - start;
+				}
+			}
+		} finally {
+			out.delete();
+		}
+		stamp = stamp / ROUNDS / pages;
+
+		System.out.println(String.format("%s pages=%d  serialize=%d bytes/page  stamp=%d bytes/page",
+				new File(src).getName(), pages, serialize, stamp));
+	}
+
+	private static void serialize(PDFIndirectObject[] objects, PDFCrossReference[] xrefs, CounterOutputStream sink) throws IOException {
+		for (int i = 0; i < objects.length; i++) {
+			objects[i].writeTo(sink);
+			xrefs[i].write(sink);
+		}
+	}
+
+	private static long allocated() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+}
@@ -0,0 +1,135 @@
+/** 
+ * Copyright (c) 2018, Woniu1983 All Rights Reserved. 
+ * 
+ */ 
+package test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import cn.woniu.lib.pdf.PDFReader;
+import cn.woniu.lib.pdf.PDFWriter;
+import cn.woniu.lib.pdf.arc.PDFBody;
+import cn.woniu.lib.pdf.model.PDFArray;
+import cn.woniu.lib.pdf.model.PDFDictionary;
+import cn.woniu.lib.pdf.model.PDFIndirectReference;
+import cn.woniu.lib.pdf.model.PDFName;
+import cn.woniu.lib.pdf.model.PDFNumeric;
+import cn.woniu.lib.pdf.util.StringUtils;
+
+/** 
+ * @ClassName: BenchXrefTable <br/> 
+ * @Description: 大量对象时xref的内存和时间:  <br/>
+ * 用PDFBody写一个有N个对象(默认120万, 第一个参数可指定)的PDF, 分别为xref表和xref流(ObjStm)两种格式,
+ * 记录写入对象和写xref的时间, 以及写完所有对象后PDFBody占用的堆内存(GC后);
+ * 再用PDFReader(partial和完全解析)打开, 记录时间和PDFReader占用的堆内存.
+ *
+ * @author woniu1983 
+ * @date: 2026年10月18日 上午1:58:12 <br/>
+ * @version  
+ * @since JDK 1.6 
+ */
+public class BenchXrefTable {
+
+	public static void main(String[] args) throws IOException {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 1200000;
+		for (int fc = 0; fc < 2; fc++) {
+			File file = File.createTempFile("bench-xref-", ".pdf");
+			try {
+				write(file, count, fc == 1);
+				read(file, true);
+				read(file, false);
+			} finally {
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * 只为取得PDFBody: 打开输出并在文件头之后创建body
+	 */
+	private static class BodyWriter extends PDFWriter {
+
+		BodyWriter(OutputStream out, boolean fullCompression) throws IOException {
+			super(out);
+			setFullCompression(fullCompression);
+			openOutput();
+			getOs().write(StringUtils.getISOBytes(fullCompression ? "%PDF-1.5\n" : "%PDF-1.4\n"));
+			body = new PDFBody(this);
+		}
+
+		PDFBody getBody() {
+			return body;
+		}
+	}
+
+	private static void write(File file, int count, boolean fullCompression) throws IOException {
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			long heap = usedHeap();
+			BodyWriter writer = new BodyWriter(fos, fullCompression);
+			PDFBody body = writer.getBody();
+			PDFIndirectReference root = body.getPdfIndirectReference();
+			PDFIndirectReference pages = body.getPdfIndirectReference();
+			PDFIndirectReference page = body.getPdfIndirectReference();
+
+			long t0 = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				body.add(new PDFNumeric(i));
+			}
+			PDFDictionary catalog = new PDFDictionary(PDFName.CATALOG);
+			catalog.put(PDFName.PAGES, pages);
+			body.add(catalog, root);
+			PDFDictionary kids = new PDFDictionary(PDFName.PAGES);
+			kids.put(PDFName.KIDS, new PDFArray(page));
+			kids.put(PDFName.COUNT, new PDFNumeric(1));
+			body.add(kids, pages);
+			PDFDictionary p = new PDFDictionary(PDFName.PAGE);
+			p.put(PDFName.PARENT, pages);
+			p.put(PDFName.MEDIABOX, new PDFArray(new int[] {0, 0, 595, 842}));
+			body.add(p, page, false);
+			long t1 = System.nanoTime();
+			long retained = usedHeap() - heap;
+
+			OutputStream os = writer.getOs();
+			long xref = body.offset();
+			body.writeCrossReferenceTable(os, root, null, null, null, 0);
+			if (fullCompression) {
+				// xref流的字典即trailer
+				xref = body.offset();
+			} else {
+				os.write(StringUtils.getISOBytes("trailer\n<</Size " + body.size() + "/Root " + root + ">>\n"));
+			}
+			os.write(StringUtils.getISOBytes("startxref\n" + xref + "\n%%EOF\n"));
+			os.flush();
+			long t2 = System.nanoTime();
+			System.out.println(String.format("write %-10s objects=%d  add=%8.1fms  xref=%8.1fms  body heap=%6.1fMB  file=%6.1fMB",
+					fullCompression ? "xref-stm" : "xref-table", count, (t1 - t0) / 1e6, (t2 - t1) / 1e6,
+					retained / 1048576.0, file.length() / 1048576.0));
+		} finally {
+			fos.close();
+		}
+	}
+
+	private static void read(File file, boolean partial) throws IOException {
+		long heap = usedHeap();
+		long t0 = System.nanoTime();
+		PDFReader reader = new PDFReader(file.getPath(), partial);
+		long t1 = System.nanoTime();
+		long retained = usedHeap() - heap;
+		System.out.println(String.format("read  %-10s xrefSize=%d  open=%8.1fms  reader heap=%6.1fMB",
+				partial ? "partial" : "full", reader.getXrefSize(), (t1 - t0) / 1e6, retained / 1048576.0));
+		reader.close();
+	}
+
+	private static long usedHeap() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+}
@@ -0,0 +1,163 @@
+/** 
+ * Copyright (c) 2018, Woniu1983 All Rights Reserved. 
+ * 
+ */ 
+package test;
+
+import java.io.File;
+import java.io.IOException;
+
+import cn.woniu.lib.pdf.PDFReader;
+import cn.woniu.lib.pdf.PDFWatermark;
+import cn.woniu.lib.pdf.image.PNGImage;
+import cn.woniu.lib.pdf.model.PDFArray;
+import cn.woniu.lib.pdf.model.PDFDictionary;
+import cn.woniu.lib.pdf.model.PDFName;
+import cn.woniu.lib.pdf.model.PDFObj;
+import cn.woniu.lib.pdf.model.derivate.PRStream;
+
+/** 
+ * @ClassName: TestXrefStream <br/> 
+ * @Description: 交叉引用流和对象流(/ObjStm)的读写回归测试:  <br/>
+ * 1. resource/source.pdf以fullCompression加水印, 得到以交叉引用流结尾的PDF;
+ * 2. 以完全解析和partial两种方式读取, 比较页数和每个对象的类型, 检查xref流中自身的条目指向startxref;
+ * 3. 再以fullCompression加水印, 重新读取输出, 检查页数和新增的对象个数.
+ * 失败时抛出IllegalStateException.
+ *
+ * @author woniu1983 
+ * @date: 2026年10月18日 上午5:12:40 <br/>
+ * @version  
+ * @since JDK 1.6 
+ */
+public class TestXrefStream {
+
+	public static void main(String[] args) throws IOException {
+		File source = new File("resource/source.pdf");
+		File compressed = File.createTempFile("xrefstm-", ".pdf");
+		File restamped = File.createTempFile("xrefstm-re-", ".pdf");
+		try {
+			PDFReader reader = new PDFReader(source.getPath(), false);
+			int pages = reader.getPageCount();
+			int objects = countObjects(reader);
+			stamp(reader, compressed);
+			int compressedObjects = verify(compressed, pages);
+
+			// 以交叉引用流的PDF为输入再次压缩输出, 两次加同样的水印, 新增的对象数应相同
+			stamp(new PDFReader(compressed.getPath()), restamped);
+			int restampedObjects = verify(restamped, pages);
+			check(restampedObjects - compressedObjects == compressedObjects - objects,
+					"objects " + objects + " -> " + compressedObjects + " -> " + restampedObjects);
+			System.out.println("OK");
+		} finally {
+			compressed.delete();
+			restamped.delete();
+		}
+	}
+
+	/**
+	 * 以完全解析和partial两种方式读取, 比较页数和每个对象的类型
+	 * @return 完全解析后的对象个数
+	 */
+	private static int verify(File file, int pages) throws IOException {
+		PDFReader full = new PDFReader(file.getPath(), false);
+		PDFReader partial = new PDFReader(file.getPath(), true);
+		try {
+			check(full.isLastXrefStream(), "no cross-reference stream in " + file);
+			check(full.getPageCount() == pages, "full: pages=" + full.getPageCount() + ", expected " + pages);
+			check(partial.getPageCount() == pages, "partial: pages=" + partial.getPageCount() + ", expected " + pages);
+			check(full.getXrefSize() == partial.getXrefSize(),
+					"xref size full=" + full.getXrefSize() + ", partial=" + partial.getXrefSize());
+			checkSelfEntry(full);
+			for (int k = 1; k < full.getXrefSize(); k++) {
+				PDFObj a = full.getPdfObject(k);
+				PDFObj b = partial.getPdfObject(k);
+				// 完全解析时ObjStm展开后不保留
+				if (a == null && isObjStm(b))
+					continue;
+				check((a == null) == (b == null) && (a == null || a.type() == b.type()), "object " + k + " differs: " + a + " / " + b);
+			}
+			int objects = countObjects(full);
+			System.out.println(file.getName() + ": pages=" + pages + " xrefSize=" + full.getXrefSize() + " objects=" + objects);
+			return objects;
+		} finally {
+			full.close();
+			partial.close();
+		}
+	}
+
+	/**
+	 * xref流的对象号是最后分配的, 它在流中的条目应为type 1, 偏移等于startxref
+	 */
+	private static void checkSelfEntry(PDFReader reader) throws IOException {
+		int self = reader.getXrefSize() - 1;
+		PDFObj obj = reader.getPdfObject(self);
+		check(obj != null && obj.isStream() && PDFName.XREF.equals(((PDFDictionary)obj).getAsName(PDFName.TYPE)),
+				"object " + self + " is not the cross-reference stream: " + obj);
+		PRStream stream = (PRStream)obj;
+		PDFArray w = stream.getAsArray(PDFName.W);
+		PDFArray index = stream.getAsArray(PDFName.INDEX);
+		byte data[] = reader.getStreamBytes(stream);
+		int width = w.getAsNumber(0).intValue() + w.getAsNumber(1).intValue() + w.getAsNumber(2).intValue();
+		int row = 0;
+		for (int k = 0; k < index.size(); k += 2) {
+			int start = index.getAsNumber(k).intValue();
+			int count = index.getAsNumber(k + 1).intValue();
+			if (self >= start && self < start + count) {
+				int p = (row + self - start) * width;
+				long type = field(data, p, w.getAsNumber(0).intValue(), 1);
+				long offset = field(data, p += w.getAsNumber(0).intValue(), w.getAsNumber(1).intValue(), 0);
+				long gen = field(data, p + w.getAsNumber(1).intValue(), w.getAsNumber(2).intValue(), 0);
+				check(type == 1 && offset == reader.getLastXref() && gen == 0,
+						"xref stream entry of object " + self + ": " + type + " " + offset + " " + gen + ", startxref=" + reader.getLastXref());
+				return;
+			}
+			row += count;
+		}
+		throw new IllegalStateException("object " + self + " missing from its own cross-reference stream");
+	}
+
+	/**
+	 * 大端序的字段, 宽度为0时取默认值
+	 */
+	private static long field(byte data[], int pos, int len, long def) {
+		if (len == 0)
+			return def;
+		long v = 0;
+		for (int k = 0; k < len; k++)
+			v = (v << 8) | (data[pos + k] & 0xff);
+		return v;
+	}
+
+	/**
+	 * 不含ObjStm: 被后续更新取代的ObjStm不再被引用, 完全解析时作为普通的流保留
+	 */
+	private static int countObjects(PDFReader reader) {
+		int count = 0;
+		for (int k = 1; k < reader.getXrefSize(); k++) {
+			PDFObj obj = reader.getPdfObject(k);
+			if (obj != null && !isObjStm(obj))
+				count++;
+		}
+		return count;
+	}
+
+	private static void stamp(PDFReader reader, File out) throws IOException {
+		PDFWatermark watermarker = new PDFWatermark(reader, out, PNGImage.getImage("resource/p.png"));
+		try {
+			watermarker.setFullCompression(true);
+			watermarker.appendWatermark();
+		} finally {
+			watermarker.close();
+		}
+	}
+
+	private static boolean isObjStm(PDFObj obj) {
+		return obj != null && obj.isStream() && PDFName.OBJSTM.equals(((PDFDictionary)obj).getAsName(PDFName.TYPE));
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition)
+			throw new IllegalStateException(message);
+	}
+
+}